@@ -5,17 +5,33 @@ import java.util.*;
 public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     private final List<T> data;
     private final Comparator<? super T> comparator;
+    private final BTreeIndex<T> searchIndex;
+    private final int base;
 
     public ArraySet(Collection<? extends T> data, Comparator<? super T> comparator) {
+        this(data, comparator, false);
+    }
+
+    public ArraySet(Collection<? extends T> data, Comparator<? super T> comparator, boolean searchIndex) {
         this.comparator = comparator;
-        Set<T> set = new TreeSet<>(comparator);
-        set.addAll(data);
-        this.data = new ArrayList<>(set);
+        this.data = sortedUnique(data, comparator);
+        this.searchIndex = searchIndex ? new BTreeIndex<>(this.data, comparator) : null;
+        this.base = 0;
     }
 
     private ArraySet(List<T> data, Comparator<? super T> comparator) {
+        this(data, comparator, null, 0);
+    }
+
+    static <T> ArraySet<T> ofSorted(List<T> data, Comparator<? super T> comparator) {
+        return new ArraySet<>(data, comparator);
+    }
+
+    private ArraySet(List<T> data, Comparator<? super T> comparator, BTreeIndex<T> searchIndex, int base) {
         this.data = data;
         this.comparator = comparator;
+        this.searchIndex = searchIndex;
+        this.base = base;
     }
 
     public ArraySet(Collection<? extends T> data) {
@@ -65,6 +81,11 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         return Collections.unmodifiableCollection(data).iterator();
     }
 
+    @Override
+    public Spliterator<T> spliterator() {
+        return new ArraySetSpliterator<>(data, comparator, 0, data.size());
+    }
+
     @Override
     public NavigableSet<T> descendingSet() {
         return new ArraySet<>(new DescendingList<>(data), Collections.reverseOrder(comparator));
@@ -89,7 +110,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         if (fromIndex == -1 || toIndex == -1 || fromIndex > toIndex) {
             return new ArraySet<>(comparator);
         }
-        return new ArraySet<>(data.subList(fromIndex, toIndex + 1), comparator);
+        return new ArraySet<>(data.subList(fromIndex, toIndex + 1), comparator, searchIndex, base + fromIndex);
     }
 
 
@@ -117,7 +138,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     @SuppressWarnings("unchecked")
     @Override
     public boolean contains(Object o) {
-        return Collections.binarySearch(data, (T) Objects.requireNonNull(o), comparator) >= 0;
+        return search((T) Objects.requireNonNull(o)) >= 0;
     }
 
     @Override
@@ -160,8 +181,133 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         return data.size();
     }
 
+    public ArraySet<T> union(ArraySet<T> other) {
+        return merge(other, true, true, true);
+    }
+
+    public ArraySet<T> intersection(ArraySet<T> other) {
+        return merge(other, false, false, true);
+    }
+
+    public ArraySet<T> difference(ArraySet<T> other) {
+        return merge(other, true, false, false);
+    }
+
+    public ArraySet<T> symmetricDifference(ArraySet<T> other) {
+        return merge(other, true, true, false);
+    }
+
+    private ArraySet<T> merge(ArraySet<T> other, boolean onlyThis, boolean onlyOther, boolean both) {
+        if (!Objects.equals(comparator, other.comparator)) {
+            throw new IllegalArgumentException("ArraySets have different comparators");
+        }
+        List<T> left = data;
+        List<T> right = other.data;
+        ArrayList<T> result = new ArrayList<>((onlyThis ? left.size() : 0) + (onlyOther ? right.size() : 0)
+                + (both && !onlyThis && !onlyOther ? Math.min(left.size(), right.size()) : 0));
+        int i = 0;
+        int j = 0;
+        while (i < left.size() && j < right.size()) {
+            int compared = compare(left.get(i), right.get(j));
+            if (compared < 0) {
+                int next = gallop(left, right.get(j), i + 1);
+                if (onlyThis) {
+                    result.addAll(left.subList(i, next));
+                }
+                i = next;
+            } else if (compared > 0) {
+                int next = gallop(right, left.get(i), j + 1);
+                if (onlyOther) {
+                    result.addAll(right.subList(j, next));
+                }
+                j = next;
+            } else {
+                if (both) {
+                    result.add(left.get(i));
+                }
+                i++;
+                j++;
+            }
+        }
+        if (onlyThis) {
+            result.addAll(left.subList(i, left.size()));
+        }
+        if (onlyOther) {
+            result.addAll(right.subList(j, right.size()));
+        }
+        result.trimToSize();
+        return new ArraySet<>(result, comparator);
+    }
+
+    private int gallop(List<T> list, T key, int from) {
+        int low = from;
+        int high = from;
+        long step = 1;
+        while (high < list.size() && compare(list.get(high), key) < 0) {
+            low = high + 1;
+            high = (int) Math.min(from + step, list.size());
+            step <<= 1;
+        }
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(list.get(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b) {
+        return comparator != null ? comparator.compare(a, b) : ((Comparable<? super T>) a).compareTo(b);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> sortedUnique(Collection<? extends T> data, Comparator<? super T> comparator) {
+        T[] elements = (T[]) data.toArray();
+        if (data instanceof SortedSet && Objects.equals(((SortedSet<?>) data).comparator(), comparator)) {
+            return Arrays.asList(elements);
+        }
+        Comparator<? super T> order = comparator != null ? comparator : (Comparator<? super T>) Comparator.naturalOrder();
+        if (elements.length == 1) {
+            order.compare(elements[0], elements[0]);
+        }
+        boolean sorted = true;
+        for (int i = 1; i < elements.length && sorted; i++) {
+            sorted = order.compare(elements[i - 1], elements[i]) <= 0;
+        }
+        if (!sorted) {
+            Arrays.sort(elements, order);
+        }
+        int size = 0;
+        for (int i = 0; i < elements.length; i++) {
+            if (size == 0 || order.compare(elements[size - 1], elements[i]) != 0) {
+                elements[size++] = elements[i];
+            }
+        }
+        return Arrays.asList(size == elements.length ? elements : Arrays.copyOf(elements, size));
+    }
+
+    @SuppressWarnings("unchecked")
+    private int search(T element) {
+        if (searchIndex == null) {
+            return Collections.binarySearch(data, element, comparator);
+        }
+        int position = searchIndex.lowerBound(element);
+        int rank = searchIndex.rank(position) - base;
+        if (rank >= 0 && rank < data.size()) {
+            T found = searchIndex.element(position);
+            if (comparator != null ? comparator.compare(found, element) == 0 : ((Comparable<? super T>) found).compareTo(element) == 0) {
+                return rank;
+            }
+        }
+        return -Math.min(Math.max(rank, 0), data.size()) - 1;
+    }
+
     private int getIndex(T element, boolean inclusive, boolean lesser) {
-        int index = Collections.binarySearch(data, element, comparator);
+        int index = search(element);
         if (index < 0) {
             index = -index - 1;
 
@@ -0,0 +1,115 @@
+package ru.ifmo.rain.balahnin.arrayset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Compares memory and lookup latency of {@link ArraySet} with {@link IntArraySet} and {@link LongArraySet}.
+ * Memory is the growth of the used heap while building a set, including boxed elements it keeps.
+ * Construction of {@link ArraySet} is also compared with building a {@link TreeSet} as it was done before.
+ * Usage: {@code ArraySetBenchmark [size [queries [rounds]]]}.
+ */
+public class ArraySetBenchmark {
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Random random = new Random(4242);
+        int[] ints = random.ints(size).toArray();
+        long[] longs = random.longs(size).toArray();
+        int[] intQueries = random.ints(queries).toArray();
+        long[] longQueries = random.longs(queries).toArray();
+
+        NavigableSet<Integer> intSet = measure("ArraySet<Integer>", () -> {
+            List<Integer> boxed = new ArrayList<>(size);
+            for (int value : ints) {
+                boxed.add(value);
+            }
+            return new ArraySet<>(boxed);
+        });
+        measure("ArraySet<Integer> sorted", () -> new ArraySet<>(intSet));
+        measure("ArraySet<Integer> TreeSet", () -> {
+            List<Integer> boxed = new ArrayList<>(size);
+            for (int value : ints) {
+                boxed.add(value);
+            }
+            return new ArrayList<>(new TreeSet<>(boxed));
+        });
+        IntArraySet primitiveInts = measure("IntArraySet", () -> new IntArraySet(ints));
+        NavigableSet<Long> longSet = measure("ArraySet<Long>", () -> {
+            List<Long> boxed = new ArrayList<>(size);
+            for (long value : longs) {
+                boxed.add(value);
+            }
+            return new ArraySet<>(boxed);
+        });
+        LongArraySet primitiveLongs = measure("LongArraySet", () -> new LongArraySet(longs));
+
+        time("ArraySet<Integer>.floor", queries, rounds, () -> {
+            int found = 0;
+            for (int query : intQueries) {
+                Integer floor = intSet.floor(query);
+                found += floor == null ? 0 : floor;
+            }
+            return found;
+        });
+        time("IntArraySet.floor", queries, rounds, () -> {
+            int found = 0;
+            for (int query : intQueries) {
+                found += primitiveInts.floor(query, 0);
+            }
+            return found;
+        });
+        time("ArraySet<Long>.floor", queries, rounds, () -> {
+            long found = 0;
+            for (long query : longQueries) {
+                Long floor = longSet.floor(query);
+                found += floor == null ? 0 : floor;
+            }
+            return (int) found;
+        });
+        time("LongArraySet.floor", queries, rounds, () -> {
+            long found = 0;
+            for (long query : longQueries) {
+                found += primitiveLongs.floor(query, 0);
+            }
+            return (int) found;
+        });
+    }
+
+    private static <S> S measure(String name, Supplier<S> factory) {
+        long before = usedMemory();
+        long start = System.nanoTime();
+        S set = factory.get();
+        long time = System.nanoTime() - start;
+        long after = usedMemory();
+        System.out.println(String.format("%-24s build %8.1f ms, %8.1f MB", name, time / 1e6, (after - before) / (double) (1 << 20)));
+        return set;
+    }
+
+    private static void time(String name, int queries, int rounds, IntSupplier run) {
+        sink += run.getAsInt();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            sink += run.getAsInt();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.println(String.format("%-24s %8.1f ns/op", name, best / (double) queries));
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
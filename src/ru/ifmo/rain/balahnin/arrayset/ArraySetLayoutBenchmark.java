@@ -0,0 +1,70 @@
+package ru.ifmo.rain.balahnin.arrayset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+
+/**
+ * Compares lookup latency of {@link ArraySet} with and without the B-tree search index.
+ * Usage: {@code ArraySetLayoutBenchmark [queries [size...]]}, sizes are 1K and 1M by default;
+ * Elements are boxed in random order, as they are when a set is built from unsorted data,
+ * so neighbours in the set aren't neighbours in memory. 100M elements need a heap of about 6 GB.
+ */
+public class ArraySetLayoutBenchmark {
+    private static final int ROUNDS = 5;
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<Integer> sizes = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            sizes.add(Integer.parseInt(args[i]));
+        }
+        if (sizes.isEmpty()) {
+            sizes = List.of(1_000, 1_000_000);
+        }
+        Random random = new Random(4242);
+        for (int size : sizes) {
+            int[] values = new int[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = 2 * i;
+            }
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int value = values[i];
+                values[i] = values[j];
+                values[j] = value;
+            }
+            List<Integer> data = new ArrayList<>(size);
+            for (int value : values) {
+                data.add(value);
+            }
+            values = null;
+            Integer[] keys = new Integer[queries];
+            for (int i = 0; i < queries; i++) {
+                keys[i] = random.nextInt(2 * size);
+            }
+            NavigableSet<Integer> plain = new ArraySet<>(data, null);
+            NavigableSet<Integer> indexed = new ArraySet<>(data, null, true);
+            data = null;
+            System.out.println(String.format("%,12d elements: binary search %7.1f ns/op, b-tree %7.1f ns/op",
+                    size, time(plain, keys), time(indexed, keys)));
+        }
+    }
+
+    private static double time(NavigableSet<Integer> set, Integer[] keys) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            long found = 0;
+            for (Integer key : keys) {
+                Integer floor = set.floor(key);
+                found += floor == null ? 0 : floor;
+            }
+            sink += found;
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / (double) keys.length;
+    }
+}
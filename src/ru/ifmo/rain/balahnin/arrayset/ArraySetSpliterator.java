@@ -0,0 +1,64 @@
+package ru.ifmo.rain.balahnin.arrayset;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+class ArraySetSpliterator<T> implements Spliterator<T> {
+    private static final int CHARACTERISTICS = ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | IMMUTABLE;
+    private final List<T> data;
+    private final Comparator<? super T> comparator;
+    private int from;
+    private final int to;
+
+    ArraySetSpliterator(List<T> data, Comparator<? super T> comparator, int from, int to) {
+        this.data = data;
+        this.comparator = comparator;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (from >= to) {
+            return false;
+        }
+        action.accept(data.get(from++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        for (int i = from; i < to; i++) {
+            action.accept(data.get(i));
+        }
+        from = to;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        int middle = (from + to) >>> 1;
+        if (middle <= from) {
+            return null;
+        }
+        Spliterator<T> prefix = new ArraySetSpliterator<>(data, comparator, from, middle);
+        from = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+}
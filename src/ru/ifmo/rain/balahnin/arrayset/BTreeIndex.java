@@ -0,0 +1,86 @@
+package ru.ifmo.rain.balahnin.arrayset;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Search index over a sorted list laid out as an implicit B-tree: blocks of {@value #B} consecutive references,
+ * block {@code k} has children {@code k * (B + 1) + i + 1}. A search reads about {@code log(n) / log(B + 1)} blocks
+ * of the index instead of {@code log(n)} scattered positions of the list.
+ */
+class BTreeIndex<T> {
+    private static final int B = 16;
+    private final Object[] keys;
+    private final int[] ranks;
+    private final int blocks;
+    private final int size;
+    private final Comparator<? super T> comparator;
+
+    BTreeIndex(List<T> sorted, Comparator<? super T> comparator) {
+        this.size = sorted.size();
+        this.blocks = (size + B - 1) / B;
+        this.keys = new Object[blocks * B];
+        this.ranks = new int[blocks * B];
+        this.comparator = comparator;
+        fill(sorted, 0, 0);
+    }
+
+    private int fill(List<T> sorted, int rank, int block) {
+        if (block < blocks) {
+            for (int i = 0; i < B; i++) {
+                rank = fill(sorted, rank, child(block, i));
+                if (rank < size) {
+                    keys[block * B + i] = sorted.get(rank);
+                    ranks[block * B + i] = rank++;
+                }
+            }
+            rank = fill(sorted, rank, child(block, B));
+        }
+        return rank;
+    }
+
+    private static int child(int block, int i) {
+        return block * (B + 1) + i + 1;
+    }
+
+    /**
+     * Position of the first element not less than {@code key}, {@code -1} if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    int lowerBound(T key) {
+        int result = -1;
+        int block = 0;
+        while (block < blocks) {
+            int low = block * B;
+            int high = low + B;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                Object element = keys[middle];
+                if (element != null && (comparator != null
+                        ? comparator.compare((T) element, key) < 0
+                        : ((Comparable<? super T>) element).compareTo(key) < 0)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            if (low < block * B + B && keys[low] != null) {
+                result = low;
+            }
+            block = child(block, low - block * B);
+        }
+        return result;
+    }
+
+    /**
+     * Index of the element at the position in the sorted list, size of the list for position {@code -1}.
+     */
+    int rank(int position) {
+        return position < 0 ? size : ranks[position];
+    }
+
+    @SuppressWarnings("unchecked")
+    T element(int position) {
+        return (T) keys[position];
+    }
+}
@@ -2,8 +2,9 @@ package ru.ifmo.rain.balahnin.arrayset;
 
 import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 
-public class DescendingList<T> extends AbstractList<T> {
+public class DescendingList<T> extends AbstractList<T> implements RandomAccess {
     private List<T> data;
 
     DescendingList(List<T> data) {
@@ -0,0 +1,257 @@
+package ru.ifmo.rain.balahnin.arrayset;
+
+import java.util.*;
+
+public class IntArraySet extends AbstractSet<Integer> implements NavigableSet<Integer> {
+    private final int[] data;
+    private final int from;
+    private final int to;
+
+    public IntArraySet(int... data) {
+        int[] sorted = data.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        this.data = sorted;
+        this.from = 0;
+        this.to = size;
+    }
+
+    public IntArraySet(Collection<Integer> data) {
+        this(unbox(data));
+    }
+
+    public IntArraySet() {
+        this(new int[0], 0, 0);
+    }
+
+    private IntArraySet(int[] data, int from, int to) {
+        this.data = data;
+        this.from = from;
+        this.to = to;
+    }
+
+    private static int[] unbox(Collection<Integer> data) {
+        int[] result = new int[data.size()];
+        int i = 0;
+        for (Integer value : data) {
+            result[i++] = value;
+        }
+        return result;
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(data, from, to, value) >= 0;
+    }
+
+    public int lower(int value, int absent) {
+        return getValue(value, false, false, absent);
+    }
+
+    public int floor(int value, int absent) {
+        return getValue(value, true, false, absent);
+    }
+
+    public int ceiling(int value, int absent) {
+        return getValue(value, true, true, absent);
+    }
+
+    public int higher(int value, int absent) {
+        return getValue(value, false, true, absent);
+    }
+
+    public int firstInt() {
+        if (from == to) {
+            throw new NoSuchElementException("IntArraySet is empty");
+        }
+        return data[from];
+    }
+
+    public int lastInt() {
+        if (from == to) {
+            throw new NoSuchElementException("IntArraySet is empty");
+        }
+        return data[to - 1];
+    }
+
+    public int[] toIntArray() {
+        return Arrays.copyOfRange(data, from, to);
+    }
+
+    @Override
+    public Integer lower(Integer t) {
+        int index = getIndex(t, false, false);
+        return index == -1 ? null : data[index];
+    }
+
+    @Override
+    public Integer floor(Integer t) {
+        int index = getIndex(t, true, false);
+        return index == -1 ? null : data[index];
+    }
+
+    @Override
+    public Integer ceiling(Integer t) {
+        int index = getIndex(t, true, true);
+        return index == -1 ? null : data[index];
+    }
+
+    @Override
+    public Integer higher(Integer t) {
+        int index = getIndex(t, false, true);
+        return index == -1 ? null : data[index];
+    }
+
+    @Override
+    public Integer pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Integer pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public int nextInt() {
+                if (index >= to) {
+                    throw new NoSuchElementException();
+                }
+                return data[index++];
+            }
+        };
+    }
+
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return Spliterators.spliterator(data, from, to,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    @Override
+    public NavigableSet<Integer> descendingSet() {
+        return ArraySet.ofSorted(new DescendingList<>(new Boxed()), Collections.reverseOrder());
+    }
+
+    @Override
+    public Iterator<Integer> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public NavigableSet<Integer> subSet(Integer fromElement, boolean fromInclusive, Integer toElement, boolean toInclusive) {
+        if (from == to) {
+            return this;
+        }
+        int fromIndex = getIndex(fromElement, fromInclusive, true);
+        int toIndex = getIndex(toElement, toInclusive, false);
+        if (fromElement > toElement || fromIndex == -1 || toIndex == -1 || fromIndex > toIndex) {
+            return new IntArraySet(data, from, from);
+        }
+        return new IntArraySet(data, fromIndex, toIndex + 1);
+    }
+
+    @Override
+    public NavigableSet<Integer> headSet(Integer toElement, boolean inclusive) {
+        if (from == to) {
+            return this;
+        }
+        return subSet(data[from], true, toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<Integer> tailSet(Integer fromElement, boolean inclusive) {
+        if (from == to) {
+            return this;
+        }
+        return subSet(fromElement, inclusive, data[to - 1], true);
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return contains(((Integer) Objects.requireNonNull(o)).intValue());
+    }
+
+    @Override
+    public SortedSet<Integer> subSet(Integer fromElement, Integer toElement) {
+        if (fromElement > toElement) {
+            throw new IllegalArgumentException();
+        }
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<Integer> headSet(Integer toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<Integer> tailSet(Integer fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Integer first() {
+        return firstInt();
+    }
+
+    @Override
+    public Integer last() {
+        return lastInt();
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    private int getIndex(int element, boolean inclusive, boolean lesser) {
+        int index = Arrays.binarySearch(data, from, to, element);
+        if (index < 0) {
+            index = -index - 1;
+            if (!lesser) {
+                index--;
+            }
+        } else if (!inclusive) {
+            index += lesser ? 1 : -1;
+        }
+        return index >= from && index < to ? index : -1;
+    }
+
+    private int getValue(int element, boolean inclusive, boolean lesser, int absent) {
+        int index = getIndex(element, inclusive, lesser);
+        return index == -1 ? absent : data[index];
+    }
+
+    private class Boxed extends AbstractList<Integer> implements RandomAccess {
+        @Override
+        public Integer get(int index) {
+            Objects.checkIndex(index, size());
+            return data[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
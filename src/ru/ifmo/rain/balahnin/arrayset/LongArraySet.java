@@ -0,0 +1,257 @@
+package ru.ifmo.rain.balahnin.arrayset;
+
+import java.util.*;
+
+public class LongArraySet extends AbstractSet<Long> implements NavigableSet<Long> {
+    private final long[] data;
+    private final int from;
+    private final int to;
+
+    public LongArraySet(long... data) {
+        long[] sorted = data.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        this.data = sorted;
+        this.from = 0;
+        this.to = size;
+    }
+
+    public LongArraySet(Collection<Long> data) {
+        this(unbox(data));
+    }
+
+    public LongArraySet() {
+        this(new long[0], 0, 0);
+    }
+
+    private LongArraySet(long[] data, int from, int to) {
+        this.data = data;
+        this.from = from;
+        this.to = to;
+    }
+
+    private static long[] unbox(Collection<Long> data) {
+        long[] result = new long[data.size()];
+        int i = 0;
+        for (Long value : data) {
+            result[i++] = value;
+        }
+        return result;
+    }
+
+    public boolean contains(long value) {
+        return Arrays.binarySearch(data, from, to, value) >= 0;
+    }
+
+    public long lower(long value, long absent) {
+        return getValue(value, false, false, absent);
+    }
+
+    public long floor(long value, long absent) {
+        return getValue(value, true, false, absent);
+    }
+
+    public long ceiling(long value, long absent) {
+        return getValue(value, true, true, absent);
+    }
+
+    public long higher(long value, long absent) {
+        return getValue(value, false, true, absent);
+    }
+
+    public long firstLong() {
+        if (from == to) {
+            throw new NoSuchElementException("LongArraySet is empty");
+        }
+        return data[from];
+    }
+
+    public long lastLong() {
+        if (from == to) {
+            throw new NoSuchElementException("LongArraySet is empty");
+        }
+        return data[to - 1];
+    }
+
+    public long[] toLongArray() {
+        return Arrays.copyOfRange(data, from, to);
+    }
+
+    @Override
+    public Long lower(Long t) {
+        int index = getIndex(t, false, false);
+        return index == -1 ? null : data[index];
+    }
+
+    @Override
+    public Long floor(Long t) {
+        int index = getIndex(t, true, false);
+        return index == -1 ? null : data[index];
+    }
+
+    @Override
+    public Long ceiling(Long t) {
+        int index = getIndex(t, true, true);
+        return index == -1 ? null : data[index];
+    }
+
+    @Override
+    public Long higher(Long t) {
+        int index = getIndex(t, false, true);
+        return index == -1 ? null : data[index];
+    }
+
+    @Override
+    public Long pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Long pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public long nextLong() {
+                if (index >= to) {
+                    throw new NoSuchElementException();
+                }
+                return data[index++];
+            }
+        };
+    }
+
+    @Override
+    public Spliterator.OfLong spliterator() {
+        return Spliterators.spliterator(data, from, to,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    @Override
+    public NavigableSet<Long> descendingSet() {
+        return ArraySet.ofSorted(new DescendingList<>(new Boxed()), Collections.reverseOrder());
+    }
+
+    @Override
+    public Iterator<Long> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public NavigableSet<Long> subSet(Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+        if (from == to) {
+            return this;
+        }
+        int fromIndex = getIndex(fromElement, fromInclusive, true);
+        int toIndex = getIndex(toElement, toInclusive, false);
+        if (fromElement > toElement || fromIndex == -1 || toIndex == -1 || fromIndex > toIndex) {
+            return new LongArraySet(data, from, from);
+        }
+        return new LongArraySet(data, fromIndex, toIndex + 1);
+    }
+
+    @Override
+    public NavigableSet<Long> headSet(Long toElement, boolean inclusive) {
+        if (from == to) {
+            return this;
+        }
+        return subSet(data[from], true, toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<Long> tailSet(Long fromElement, boolean inclusive) {
+        if (from == to) {
+            return this;
+        }
+        return subSet(fromElement, inclusive, data[to - 1], true);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return contains(((Long) Objects.requireNonNull(o)).longValue());
+    }
+
+    @Override
+    public SortedSet<Long> subSet(Long fromElement, Long toElement) {
+        if (fromElement > toElement) {
+            throw new IllegalArgumentException();
+        }
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<Long> headSet(Long toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<Long> tailSet(Long fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Long first() {
+        return firstLong();
+    }
+
+    @Override
+    public Long last() {
+        return lastLong();
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    private int getIndex(long element, boolean inclusive, boolean lesser) {
+        int index = Arrays.binarySearch(data, from, to, element);
+        if (index < 0) {
+            index = -index - 1;
+            if (!lesser) {
+                index--;
+            }
+        } else if (!inclusive) {
+            index += lesser ? 1 : -1;
+        }
+        return index >= from && index < to ? index : -1;
+    }
+
+    private long getValue(long element, boolean inclusive, boolean lesser, long absent) {
+        int index = getIndex(element, inclusive, lesser);
+        return index == -1 ? absent : data[index];
+    }
+
+    private class Boxed extends AbstractList<Long> implements RandomAccess {
+        @Override
+        public Long get(int index) {
+            Objects.checkIndex(index, size());
+            return data[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
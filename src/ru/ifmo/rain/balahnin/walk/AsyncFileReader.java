@@ -0,0 +1,140 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reads whole files through {@link AsynchronousFileChannel}, keeping up to {@code concurrency} files in flight.
+ * Every file in flight owns one direct buffer from a fixed pool; reads of one file are issued one after another.
+ * Files are opened on the same pool of {@code concurrency} threads, which also runs the blocking reads of the channels,
+ * so both opens and reads of different files overlap.
+ */
+class AsyncFileReader implements AutoCloseable {
+    private final int concurrency;
+    private final Semaphore inFlight;
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final ExecutorService executor;
+
+    AsyncFileReader(int concurrency, BufferPool pool) {
+        this.concurrency = concurrency;
+        inFlight = new Semaphore(concurrency);
+        buffers = new ArrayBlockingQueue<>(concurrency);
+        for (int i = 0; i < concurrency; ++i) {
+            buffers.add(pool.allocateDirect());
+        }
+        executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "walk-async-read");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts reading the file into the accumulator, waiting while too many files are in flight.
+     *
+     * @param pool provides arrays to hash from on completion threads
+     * @return future completed when the whole file is consumed or completed exceptionally if it can't be read
+     */
+    CompletableFuture<Void> read(Path file, HashAlgorithm.Accumulator accumulator, BufferPool pool) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+            return result;
+        }
+        ByteBuffer buffer = buffers.remove();
+        try {
+            executor.execute(() -> start(file, accumulator, pool, buffer, result));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            release(buffer);
+        }
+        return result;
+    }
+
+    /**
+     * Opens the file and issues its first read, runs on the pool.
+     */
+    private void start(Path file, HashAlgorithm.Accumulator accumulator, BufferPool pool, ByteBuffer buffer,
+                       CompletableFuture<Void> result) {
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(file, Set.of(StandardOpenOption.READ), executor);
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+            release(buffer);
+            return;
+        }
+        channel.read(buffer, 0, null, new CompletionHandler<>() {
+            private long position;
+
+            @Override
+            public void completed(Integer read, Object attachment) {
+                if (read < 0) {
+                    finish(null);
+                    return;
+                }
+                try {
+                    buffer.flip();
+                    accumulator.update(buffer, pool.heap());
+                    buffer.clear();
+                    position += read;
+                    channel.read(buffer, position, null, this);
+                } catch (RuntimeException e) {
+                    finish(e);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, Object attachment) {
+                finish(e);
+            }
+
+            private void finish(Throwable e) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+                if (e == null) {
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(e);
+                }
+                release(buffer);
+            }
+        });
+    }
+
+    private void release(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.add(buffer);
+        inFlight.release();
+    }
+
+    /**
+     * Waits until all started reads and actions depending on them are complete.
+     */
+    void await() throws InterruptedException {
+        inFlight.acquire(concurrency);
+        inFlight.release(concurrency);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,23 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hashes visited files through {@link AsyncFileReader}, so many small files are read at once.
+ */
+class AsyncHashFileVisitor extends FNVHashFileVisitor {
+    private final AsyncFileReader reader;
+
+    AsyncHashFileVisitor(AsyncWalkWriter.Segment output, FileHasher hasher, RecordFormat format, MerkleTree tree,
+                         WalkFilter filter, boolean followLinks, AsyncFileReader reader) {
+        super(output, hasher, format, tree, filter, followLinks);
+        this.reader = reader;
+    }
+
+    @Override
+    CompletableFuture<Long> hash(Path file, BasicFileAttributes attrs) {
+        return hasher.hash(file, attrs, reader);
+    }
+}
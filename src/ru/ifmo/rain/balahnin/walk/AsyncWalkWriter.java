@@ -0,0 +1,310 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output stage of the walk.
+ * Records are added to {@link Segment segments}, which are written one after another in the order they were opened,
+ * so several segments may be filled concurrently. A dedicated thread writes records batched through a direct buffer.
+ * At most {@code capacity} records may wait in a segment and at most {@code segments} segments may wait for writing,
+ * adding blocks when the limit is reached. Blocking is managed, see {@link ForkJoinPool#managedBlock},
+ * so producers running on a fork-join pool don't starve it.
+ * Output may be compressed with gzip on the same thread.
+ * Segments are numbered from zero, every one is expected to hold records of one input root for {@link Checkpoints}.
+ */
+class AsyncWalkWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final Future<byte[]> END = CompletableFuture.completedFuture(null);
+    private static final Future<byte[]> REWIND = CompletableFuture.completedFuture(null);
+
+    private final WritableByteChannel channel;
+    private final int capacity;
+    private final BlockingQueue<Segment> segments;
+    private final Segment last = new Segment(1);
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Thread thread;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final FileChannel file;
+    private final Checkpoints checkpoints;
+    private int root;
+    private long rootStart;
+    private boolean resuming;
+    private long written;
+    private volatile IOException error;
+
+    /**
+     * @param checkpoints saves progress of the output, {@code null} to save nothing.
+     * If it is resumed, output is truncated to the checkpoint and the first segment gets the number of its root.
+     */
+    AsyncWalkWriter(Path file, int capacity, int segments, boolean gzip, Checkpoints checkpoints) throws IOException {
+        Checkpoints.State resumed = checkpoints == null ? null : checkpoints.resumed();
+        this.file = resumed == null
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.WRITE);
+        try {
+            if (resumed != null) {
+                if (this.file.size() < resumed.committed) {
+                    throw new IOException("output " + file + " is shorter than checkpoint");
+                }
+                this.file.truncate(resumed.committed);
+                this.file.position(resumed.committed);
+                root = resumed.root - 1;
+                rootStart = resumed.rootStart;
+                resuming = true;
+                written = resumed.committed;
+            } else {
+                root = -1;
+            }
+            channel = gzip ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(this.file), BUFFER_SIZE)) : this.file;
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+        this.checkpoints = checkpoints;
+        this.capacity = capacity;
+        this.segments = new ArrayBlockingQueue<>(segments);
+        thread = new Thread(this::run, "walk-writer");
+        thread.start();
+    }
+
+    /**
+     * Opens segment written after all previously opened ones.
+     */
+    Segment segment() throws IOException {
+        Segment segment = new Segment(capacity);
+        put(segments, segment);
+        return segment;
+    }
+
+    /**
+     * Number of records added but not written yet.
+     */
+    int pending() {
+        return pending.get();
+    }
+
+    private void run() {
+        try {
+            Segment segment;
+            while ((segment = segments.take()) != last) {
+                start();
+                Future<byte[]> next;
+                while ((next = segment.records.take()) != END) {
+                    if (next == REWIND) {
+                        if (error == null) {
+                            try {
+                                rewind();
+                            } catch (IOException e) {
+                                error = e;
+                            }
+                        }
+                        continue;
+                    }
+                    pending.decrementAndGet();
+                    byte[] record;
+                    try {
+                        record = next.get();
+                    } catch (ExecutionException e) {
+                        if (error == null) {
+                            error = new IOException("can't compute record: " + e.getCause(), e.getCause());
+                        }
+                        continue;
+                    }
+                    if (error == null) {
+                        try {
+                            write(record);
+                            if (checkpoints != null && checkpoints.due()) {
+                                checkpoint(root);
+                            }
+                        } catch (IOException e) {
+                            error = e;
+                        }
+                    }
+                }
+            }
+            if (error == null) {
+                flush();
+                if (checkpoints != null) {
+                    checkpoint(root + 1);
+                }
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void start() {
+        root++;
+        if (resuming) {
+            resuming = false;
+        } else {
+            rootStart = written + buffer.position();
+        }
+    }
+
+    /**
+     * Discards everything written for the current root.
+     */
+    private void rewind() throws IOException {
+        if (channel != file) {
+            throw new IOException("compressed output can't be rewound");
+        }
+        flush();
+        file.truncate(rootStart);
+        file.position(rootStart);
+        written = rootStart;
+    }
+
+    /**
+     * Flushes the output to disk and saves checkpoint with the given root being written.
+     */
+    private void checkpoint(int root) throws IOException {
+        flush();
+        file.force(false);
+        checkpoints.save(new Checkpoints.State(root, root == this.root ? rootStart : written, written));
+    }
+
+    private void write(byte[] record) throws IOException {
+        if (record.length > buffer.remaining()) {
+            flush();
+            if (record.length > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(record));
+                return;
+            }
+        }
+        buffer.put(record);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            written += channel.write(bytes);
+        }
+    }
+
+    private <E> void put(BlockingQueue<E> queue, E element) throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                private boolean added;
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    if (!added) {
+                        queue.put(element);
+                        added = true;
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return added || (added = queue.offer(element));
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for output queue", e);
+        }
+    }
+
+    /**
+     * Waits until all records are written. All opened segments must be closed before.
+     *
+     * @throws IOException if some record couldn't be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            segments.put(last);
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Part of the output filled by one producer.
+     */
+    class Segment implements AutoCloseable {
+        private final BlockingQueue<Future<byte[]>> records;
+
+        private Segment(int capacity) {
+            records = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void add(byte[] record) throws IOException {
+            add(CompletableFuture.completedFuture(record));
+        }
+
+        /**
+         * Adds record which may still be computed, following records wait for it.
+         * It must not complete exceptionally, producers write records of failed files themselves.
+         * Otherwise the output stops and {@link AsyncWalkWriter#close()} throws.
+         */
+        void add(Future<byte[]> record) throws IOException {
+            pending.incrementAndGet();
+            try {
+                put(records, record);
+            } catch (IOException e) {
+                pending.decrementAndGet();
+                throw e;
+            }
+        }
+
+        /**
+         * Discards records of the segment added before and, if it is resumed, records of its root in the output.
+         * Following records are written from the start of the root.
+         */
+        void rewind() throws IOException {
+            put(records, REWIND);
+        }
+
+        /**
+         * Marks segment as complete, so the following segments can be written.
+         */
+        @Override
+        public void close() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    records.put(END);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact output for other programs: every record is the hash as 8 bytes, length of the path in bytes as 4 bytes,
+ * both big-endian, and the path in UTF-8.
+ */
+class BinaryRecordFormat implements RecordFormat {
+    @Override
+    public byte[] record(long hash, String file) {
+        byte[] path = file.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(Long.BYTES + Integer.BYTES + path.length)
+                .putLong(hash)
+                .putInt(path.length)
+                .put(path)
+                .array();
+    }
+}
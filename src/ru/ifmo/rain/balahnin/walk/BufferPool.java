@@ -0,0 +1,55 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read buffers reused by every thread hashing files, so reading a file allocates nothing.
+ * Each thread gets one direct buffer to read into and one heap array of the same size to hash from.
+ */
+class BufferPool {
+    static final int MIN_SIZE = 1 << 16;
+    static final int MAX_SIZE = 1 << 22;
+    private final int size;
+    private final WalkMetrics metrics;
+    private final ThreadLocal<ByteBuffer> direct;
+    private final ThreadLocal<byte[]> heap;
+
+    BufferPool(int size, WalkMetrics metrics) {
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IllegalArgumentException("buffer size must be in [" + MIN_SIZE + ", " + MAX_SIZE + "], now " + size);
+        }
+        this.size = size;
+        this.metrics = metrics;
+        this.direct = ThreadLocal.withInitial(this::allocateDirect);
+        this.heap = ThreadLocal.withInitial(() -> {
+            metrics.bufferAllocated(size);
+            return new byte[size];
+        });
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Direct buffer of the current thread, cleared.
+     */
+    ByteBuffer direct() {
+        return direct.get().clear();
+    }
+
+    /**
+     * Heap array of the current thread.
+     */
+    byte[] heap() {
+        return heap.get();
+    }
+
+    /**
+     * Allocates direct buffer not bound to a thread, for reads completed on other threads.
+     */
+    ByteBuffer allocateDirect() {
+        metrics.bufferAllocated(size);
+        return ByteBuffer.allocateDirect(size);
+    }
+}
@@ -0,0 +1,88 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Output listing only differences from a previous walk output:
+ * {@code + <hash> <file>} for added, {@code ~ <hash> <file>} for changed
+ * and {@code - <hash> <file>} for removed files, the last ones after everything else.
+ * <p>
+ * Files are still hashed to be compared, so {@code -changes} needs {@link HashCache}: unchanged files are not read then.
+ */
+class ChangeJournal implements RecordFormat {
+    private final Map<String, Long> previous;
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final int digits;
+
+    private ChangeJournal(Map<String, Long> previous, int digits) {
+        this.previous = previous;
+        this.digits = digits;
+    }
+
+    /**
+     * @param file output of the previous walk, missing file means empty walk
+     */
+    static ChangeJournal load(Path file, int digits) throws IOException {
+        Map<String, Long> previous = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space <= 0) {
+                    continue;
+                }
+                try {
+                    previous.put(line.substring(space + 1), Long.parseUnsignedLong(line.substring(0, space), 16));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } catch (NoSuchFileException ignored) {
+        }
+        return new ChangeJournal(previous, digits);
+    }
+
+    /**
+     * Opens the file, decompressing output written with {@code -gzip}.
+     */
+    private static InputStream open(Path file) throws IOException {
+        InputStream input = new BufferedInputStream(Files.newInputStream(file));
+        input.mark(2);
+        boolean gzip = input.read() == 0x1f && input.read() == 0x8b;
+        input.reset();
+        return gzip ? new GZIPInputStream(input) : input;
+    }
+
+    @Override
+    public byte[] record(long hash, String file) {
+        seen.add(file);
+        Long old = previous.get(file);
+        if (old == null) {
+            return TextRecordFormat.record("+ ", hash, digits, file);
+        } else if (old != hash) {
+            return TextRecordFormat.record("~ ", hash, digits, file);
+        }
+        return new byte[0];
+    }
+
+    @Override
+    public void end(AsyncWalkWriter.Segment output) throws IOException {
+        for (Map.Entry<String, Long> entry : previous.entrySet()) {
+            if (!seen.contains(entry.getKey())) {
+                output.add(TextRecordFormat.record("- ", entry.getValue(), digits, entry.getKey()));
+            }
+        }
+    }
+}
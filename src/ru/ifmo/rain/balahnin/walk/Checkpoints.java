@@ -0,0 +1,182 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress of a walk saved by {@link AsyncWalkWriter}, so a walk which died can continue instead of starting over.
+ * Checkpoint file is a single line {@code <root> <root start> <committed>}: index of the input root being written,
+ * offset of its first record in the output and the output length flushed to disk. Roots before the current one are
+ * complete, files of the current one written before the committed length aren't hashed again on resume.
+ * Only the last committed record is read back on resume: traversal order of a root doesn't change between runs,
+ * so every file visited up to its path is skipped. Files added or removed meanwhile may be missed or listed twice,
+ * if the file of the last record itself is gone, the root is walked again from its start.
+ */
+class Checkpoints {
+    private static final int BINARY_HEADER = Long.BYTES + Integer.BYTES;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private final Path file;
+    private final long interval;
+    private final State resumed;
+    private long next;
+
+    /**
+     * @param interval seconds between checkpoints
+     * @param resume whether to continue from the saved checkpoint, walk starts over if there is none
+     */
+    Checkpoints(Path file, int interval, boolean resume) throws IOException {
+        this.file = file;
+        this.interval = TimeUnit.SECONDS.toNanos(interval);
+        this.resumed = resume ? load(file) : null;
+        this.next = System.nanoTime() + this.interval;
+    }
+
+    private static State load(Path file) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        String[] parts = lines.isEmpty() ? new String[0] : lines.get(0).split(" ");
+        try {
+            if (parts.length == 3) {
+                State state = new State(Integer.parseInt(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                if (state.root >= 0 && 0 <= state.rootStart && state.rootStart <= state.committed) {
+                    return state;
+                }
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IOException("incorrect checkpoint " + file);
+    }
+
+    /**
+     * Saved state to continue from, {@code null} if walk starts over.
+     */
+    State resumed() {
+        return resumed;
+    }
+
+    /**
+     * Whether the next checkpoint should be saved.
+     */
+    boolean due() {
+        return System.nanoTime() - next >= 0;
+    }
+
+    /**
+     * Saves checkpoint replacing the previous one, output must be flushed up to {@code state.committed}.
+     */
+    void save(State state) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(state.root + " " + state.rootStart + " " + state.committed);
+            writer.newLine();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        next = System.nanoTime() + interval;
+    }
+
+    /**
+     * Path of the last record of the resumed root written to the output, {@code null} if there is none.
+     * Only this record is read: a text one is found backwards from the committed length,
+     * binary ones are skipped by their lengths without reading paths.
+     *
+     * @param binary whether output is written by {@link BinaryRecordFormat}, otherwise by {@link TextRecordFormat}
+     */
+    String last(Path output, boolean binary) throws IOException {
+        if (resumed == null || resumed.committed == resumed.rootStart) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.READ)) {
+            if (channel.size() < resumed.committed) {
+                throw new IOException("output " + output + " is shorter than checkpoint");
+            }
+            return binary ? lastBinary(channel) : lastText(channel);
+        }
+    }
+
+    private String lastBinary(FileChannel channel) throws IOException {
+        DataInputStream records = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(resumed.rootStart)), 1 << 16));
+        long position = resumed.rootStart;
+        long path = -1;
+        int length = 0;
+        while (position < resumed.committed) {
+            records.readLong();
+            length = records.readInt();
+            path = position + BINARY_HEADER;
+            position = path + length;
+            records.skipNBytes(length);
+        }
+        if (position != resumed.committed) {
+            throw new IOException("checkpoint doesn't end at a record");
+        }
+        return read(channel, path, length);
+    }
+
+    private String lastText(FileChannel channel) throws IOException {
+        long end = resumed.committed - LINE_SEPARATOR.length;
+        long start = resumed.rootStart;
+        ByteBuffer block = ByteBuffer.allocate(1 << 13);
+        search:
+        for (long to = end; to > resumed.rootStart; to -= block.capacity()) {
+            long from = Math.max(resumed.rootStart, to - block.capacity());
+            block.clear().limit((int) (to - from));
+            readFully(channel, block, from);
+            for (int i = block.limit() - 1; i >= 0; i--) {
+                if (block.get(i) == '\n') {
+                    start = from + i + 1;
+                    break search;
+                }
+            }
+        }
+        String record = read(channel, start, Math.toIntExact(end - start));
+        int space = record.indexOf(' ');
+        if (space < 0) {
+            throw new IOException("checkpoint doesn't end at a record");
+        }
+        return record.substring(space + 1);
+    }
+
+    private static String read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        readFully(channel, bytes, position);
+        return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, position + bytes.position()) < 0) {
+                throw new EOFException("output ends before checkpoint");
+            }
+        }
+    }
+
+    static class State {
+        final int root;
+        final long rootStart;
+        final long committed;
+
+        State(int root, long rootStart, long committed) {
+            this.root = root;
+            this.rootStart = rootStart;
+            this.committed = committed;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Content-defined chunks of walked files, see {@link ContentChunker}.
+ * Written as UTF-8 text: for every file a line {@code <hash> <file>} followed by lines
+ * {@code \t<offset> <length> <chunk hash>}. Entries of different files may come in any order.
+ * <p>
+ * Running this class as {@code ChunkManifest <old manifest> <new manifest>} prints regions of files
+ * which are not found among chunks of the same file in the old manifest, that is what has to be re-read or transferred.
+ */
+public class ChunkManifest implements AutoCloseable {
+    private final BufferedWriter writer;
+    private final int averageSize;
+    private final int digits;
+    private IOException error;
+
+    ChunkManifest(Path file, int averageSize, int digits) throws IOException {
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        this.averageSize = averageSize;
+        this.digits = digits;
+    }
+
+    int averageSize() {
+        return averageSize;
+    }
+
+    synchronized void write(long hash, Path file, List<ContentChunker.Chunk> chunks) {
+        if (error != null) {
+            return;
+        }
+        try {
+            writer.write(String.format("%0" + digits + "x %s", hash, file));
+            writer.newLine();
+            for (ContentChunker.Chunk chunk : chunks) {
+                writer.write(String.format("\t%d %d %0" + digits + "x", chunk.offset, chunk.length, chunk.hash));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    static Map<String, List<ContentChunker.Chunk>> load(Path file) throws IOException {
+        Map<String, List<ContentChunker.Chunk>> files = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<ContentChunker.Chunk> current = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    if (line.startsWith("\t")) {
+                        String[] parts = line.substring(1).split(" ");
+                        if (current != null && parts.length == 3) {
+                            current.add(new ContentChunker.Chunk(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                                    Long.parseUnsignedLong(parts[2], 16)));
+                        }
+                    } else if (line.indexOf(' ') > 0) {
+                        current = new ArrayList<>();
+                        files.put(line.substring(line.indexOf(' ') + 1), current);
+                    }
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return files;
+    }
+
+    public static void main(String[] args) {
+        if (args == null || args.length != 2 || args[0] == null || args[1] == null) {
+            System.err.println("usage: ChunkManifest <old manifest> <new manifest>");
+            return;
+        }
+        try {
+            Map<String, List<ContentChunker.Chunk>> previous = load(Paths.get(args[0]));
+            for (Map.Entry<String, List<ContentChunker.Chunk>> entry : load(Paths.get(args[1])).entrySet()) {
+                Set<Long> known = new HashSet<>();
+                for (ContentChunker.Chunk chunk : previous.getOrDefault(entry.getKey(), List.of())) {
+                    known.add(chunk.hash);
+                }
+                for (ContentChunker.Chunk chunk : entry.getValue()) {
+                    if (!known.contains(chunk.hash)) {
+                        System.out.println(chunk.offset + " " + chunk.length + " " + entry.getKey());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("can't read manifest: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Accumulator splitting input into content-defined chunks while passing it to the whole-file accumulator.
+ * A boundary is placed where the gear rolling hash of the last bytes has zero high bits,
+ * so boundaries move together with the content when bytes are inserted or removed.
+ * Chunks are between a quarter and four times the average size.
+ */
+class ContentChunker implements HashAlgorithm.Accumulator {
+    private static final long[] GEAR = new SplittableRandom(0x5eed).longs(256).toArray();
+
+    private final HashAlgorithm.Accumulator whole;
+    private final HashAlgorithm algorithm;
+    private final long mask;
+    private final long minSize;
+    private final long maxSize;
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    private HashAlgorithm.Accumulator chunk;
+    private long chunkStart;
+    private long chunkSize;
+    private long fingerprint;
+
+    /**
+     * @param averageSize average chunk size, a power of two
+     */
+    ContentChunker(HashAlgorithm.Accumulator whole, HashAlgorithm algorithm, int averageSize) {
+        this.whole = whole;
+        this.algorithm = algorithm;
+        int bits = Integer.numberOfTrailingZeros(averageSize);
+        this.mask = bits == 0 ? 0 : -1L << (Long.SIZE - bits);
+        this.minSize = averageSize / 4;
+        this.maxSize = averageSize * 4L;
+        this.chunk = algorithm.start();
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        whole.update(bytes, offset, length);
+        int start = offset;
+        for (int i = offset; i < offset + length; ++i) {
+            fingerprint = (fingerprint << 1) + GEAR[bytes[i] & 0xff];
+            if (++chunkSize >= minSize && (fingerprint & mask) == 0 || chunkSize >= maxSize) {
+                chunk.update(bytes, start, i + 1 - start);
+                start = i + 1;
+                cut();
+            }
+        }
+        chunk.update(bytes, start, offset + length - start);
+    }
+
+    private void cut() {
+        chunks.add(new Chunk(chunkStart, chunkSize, chunk.digest()));
+        chunkStart += chunkSize;
+        chunkSize = 0;
+        fingerprint = 0;
+        chunk = algorithm.start();
+    }
+
+    /**
+     * Hash of the whole input, completes the last chunk.
+     */
+    @Override
+    public long digest() {
+        if (chunkSize > 0) {
+            cut();
+        }
+        return whole.digest();
+    }
+
+    List<Chunk> chunks() {
+        return chunks;
+    }
+
+    static class Chunk {
+        final long offset;
+        final long length;
+        final long hash;
+
+        Chunk(long offset, long length, long hash) {
+            this.offset = offset;
+            this.length = length;
+            this.hash = hash;
+        }
+    }
+}
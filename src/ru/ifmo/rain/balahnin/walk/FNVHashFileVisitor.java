@@ -1,55 +1,163 @@
 package ru.ifmo.rain.balahnin.walk;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.nio.file.FileVisitResult.CONTINUE;
+import static java.nio.file.FileVisitResult.SKIP_SUBTREE;
 
 public class FNVHashFileVisitor extends SimpleFileVisitor<Path> {
-    private static final int PRIME = 0x01000193;
-    private static final int FIRST = 0x811c9dc5;
-    private BufferedWriter writer;
+    final AsyncWalkWriter.Segment output;
+    final FileHasher hasher;
+    final RecordFormat format;
+    private final MerkleTree tree;
+    private final WalkFilter filter;
+    private final Set<Object> visited;
+    private String resumeAfter;
+    private Path root;
 
-    FNVHashFileVisitor(BufferedWriter writer) {
-        this.writer = writer;
+    /**
+     * @param tree receives hashes to build directory hashes, may be {@code null}
+     * @param filter selects listed paths, {@code null} to list everything
+     * @param followLinks whether the walk follows symbolic links, then every directory is visited only once
+     */
+    FNVHashFileVisitor(AsyncWalkWriter.Segment output, FileHasher hasher, RecordFormat format, MerkleTree tree,
+                       WalkFilter filter, boolean followLinks) {
+        this.output = output;
+        this.hasher = hasher;
+        this.format = format;
+        this.tree = tree;
+        this.filter = filter;
+        this.visited = followLinks ? ConcurrentHashMap.newKeySet() : null;
     }
 
     @Override
-    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-        int hash = FIRST;
-        try (InputStream inputStream = Files.newInputStream(file)) {
-            int symbol;
-            byte[] buffer = new byte[1024];
-            while ((symbol = inputStream.read(buffer)) >= 0) {
-                for (int i = 0; i < symbol; ++i) {
-                    hash *= PRIME;
-                    hash ^= (buffer[i] & 0xff);
-                }
-            }
-        } catch (IOException | InvalidPathException e) {
-            hash = 0;
-        } finally {
-            try {
-                writer.write(String.format("%08x ", hash) + file);
-                writer.newLine();
-            } catch (IOException e) {
-                System.err.println("can't write hash to output file: " + e.getMessage());
-            }
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        if (root == null) {
+            root = dir;
         }
+        if (filter != null && !filter.acceptsDirectory(root, dir)) {
+            return SKIP_SUBTREE;
+        }
+        if (visited != null && attrs.fileKey() != null && !visited.add(attrs.fileKey())) {
+            return SKIP_SUBTREE;
+        }
+        if (tree != null) {
+            tree.enter();
+        }
+        return CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        if (accepts(file, attrs)) {
+            write(hash(file, attrs), file, false);
+        }
+        return CONTINUE;
+    }
+
+    /**
+     * Whether the visited file should be hashed and listed.
+     */
+    boolean accepts(Path file, BasicFileAttributes attrs) {
+        return !attrs.isDirectory()
+                && (filter == null || filter.acceptsFile(root, file, attrs))
+                && !skips(file.toString());
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+        if (exc instanceof FileSystemLoopException) {
+            return CONTINUE;
+        }
+        if (filter != null && !filter.acceptsName(root, file) || skips(file.toString())) {
+            return CONTINUE;
+        }
+        hasher.metrics().failure();
+        write(CompletableFuture.completedFuture(0L), file, false);
         return CONTINUE;
     }
 
     @Override
-    public FileVisitResult visitFileFailed(Path file, IOException exc) {
-        try {
-            writer.write("00000000 " + file);
-            writer.newLine();
-        } catch (IOException e) {
-            System.err.println("can't write hash to output file: " + e.getMessage());
+    public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        if (exc != null) {
+            throw exc;
+        }
+        if (tree != null) {
+            write(tree.leave(), dir, true);
         }
         return CONTINUE;
     }
+
+    /**
+     * Skips files already written to the output by the walk being resumed, the root must be walked in the same order.
+     *
+     * @param last path of the last written record, {@code null} if nothing is written yet
+     */
+    void resume(String last) {
+        this.resumeAfter = last;
+    }
+
+    /**
+     * Prepares the visitor to walk the root again from the beginning
+     * if the last written record of the resumed walk wasn't met, e.g. because the file was removed.
+     *
+     * @return whether the root must be walked again, records of the first walk must be discarded then
+     */
+    boolean restart() {
+        if (resumeAfter == null) {
+            return false;
+        }
+        resumeAfter = null;
+        if (visited != null) {
+            visited.clear();
+        }
+        return true;
+    }
+
+    /**
+     * Whether record of the file is already written by the resumed walk, called once for every record in visiting order.
+     */
+    private boolean skips(String file) {
+        if (resumeAfter == null) {
+            return false;
+        }
+        if (resumeAfter.equals(file)) {
+            resumeAfter = null;
+        }
+        return true;
+    }
+
+    /**
+     * Starts hashing of the file.
+     */
+    CompletableFuture<Long> hash(Path file, BasicFileAttributes attrs) {
+        return CompletableFuture.completedFuture(hasher.hash(file, attrs));
+    }
+
+    /**
+     * Adds record of the path, which gets zero hash if {@code hash} completes exceptionally.
+     */
+    private void write(CompletableFuture<Long> hash, Path path, boolean directory) throws IOException {
+        String name = directory ? MerkleTree.directoryName(path) : path.toString();
+        hash = hash.exceptionally(e -> {
+            hasher.metrics().failure();
+            return 0L;
+        });
+        output.add(hash.thenApply(value -> format.record(value, name)));
+        if (tree != null) {
+            tree.add(path, directory, hash);
+        }
+    }
+
+    void write(long hash, String file) throws IOException {
+        if (skips(file)) {
+            return;
+        }
+        output.add(format.record(hash, file));
+    }
 }
@@ -0,0 +1,182 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Computes hashes of files, {@code 0} if file can't be read.
+ */
+class FileHasher {
+    private static final long MAP_WINDOW = 1 << 26;
+    private final HashAlgorithm algorithm;
+    private final long mapThreshold;
+    private final HashCache cache;
+    private final LinkDeduplicator links;
+    private final WalkMetrics metrics;
+    private final ChunkManifest chunks;
+    private final BufferPool buffers;
+
+    /**
+     * @param mapThreshold files of at least this size are hashed through memory mapping
+     * @param cache        hashes of unchanged files are taken from here, may be {@code null}
+     * @param links        hard links of already hashed files are resolved here, may be {@code null}
+     * @param metrics      receives visited files, read bytes and failures
+     * @param chunks       receives content-defined chunks of every read file, may be {@code null};
+     *                     files are always read then, bypassing cache and hard link deduplication
+     * @param buffers      read buffers of hashing threads
+     */
+    FileHasher(HashAlgorithm algorithm, long mapThreshold, HashCache cache, LinkDeduplicator links, WalkMetrics metrics,
+               ChunkManifest chunks, BufferPool buffers) {
+        this.algorithm = algorithm;
+        this.mapThreshold = mapThreshold;
+        this.cache = cache;
+        this.links = links;
+        this.metrics = metrics;
+        this.chunks = chunks;
+        this.buffers = buffers;
+    }
+
+    HashAlgorithm algorithm() {
+        return algorithm;
+    }
+
+    WalkMetrics metrics() {
+        return metrics;
+    }
+
+    long hash(Path file, BasicFileAttributes attrs) {
+        long start = System.nanoTime();
+        long hash;
+        if (chunks != null) {
+            hash = read(file, attrs);
+        } else if (links != null) {
+            hash = links.hash(file, attrs, () -> cachedHash(file, attrs));
+        } else {
+            hash = cachedHash(file, attrs);
+        }
+        metrics.file(System.nanoTime() - start);
+        return hash;
+    }
+
+    /**
+     * Hashes the file reading it through {@code reader}. Hard link deduplication and chunks are not supported.
+     */
+    CompletableFuture<Long> hash(Path file, BasicFileAttributes attrs, AsyncFileReader reader) {
+        long start = System.nanoTime();
+        Long cached = cached(file, attrs);
+        if (cached != null) {
+            metrics.file(System.nanoTime() - start);
+            return CompletableFuture.completedFuture(cached);
+        }
+        HashAlgorithm.Accumulator accumulator = algorithm.start();
+        return reader.read(file, accumulator, buffers).handle((ignored, e) -> {
+            long hash;
+            if (e != null) {
+                metrics.failure();
+                hash = 0;
+            } else {
+                metrics.bytes(attrs.size());
+                hash = accumulator.digest();
+                store(file, attrs, hash);
+            }
+            metrics.file(System.nanoTime() - start);
+            return hash;
+        });
+    }
+
+    private long cachedHash(Path file, BasicFileAttributes attrs) {
+        Long cached = cached(file, attrs);
+        if (cached != null) {
+            return cached;
+        }
+        long hash = read(file, attrs);
+        store(file, attrs, hash);
+        return hash;
+    }
+
+    private Long cached(Path file, BasicFileAttributes attrs) {
+        return cache != null ? cache.get(algorithm, file, attrs) : null;
+    }
+
+    private void store(Path file, BasicFileAttributes attrs, long hash) {
+        if (cache != null && hash != 0) {
+            cache.put(algorithm, file, attrs, hash);
+        }
+    }
+
+    /**
+     * Hashes the file with all algorithms in one read, all hashes are {@code 0} if it can't be read.
+     * Cache, hard link deduplication and chunks are not supported.
+     */
+    long[] hash(Path file, BasicFileAttributes attrs, MultiHash hashes) {
+        long start = System.nanoTime();
+        MultiHash.Accumulator accumulator = hashes.start();
+        long[] digests = read(file, attrs, accumulator) ? accumulator.digests() : new long[hashes.digits().length];
+        metrics.file(System.nanoTime() - start);
+        return digests;
+    }
+
+    private long read(Path file, BasicFileAttributes attrs) {
+        HashAlgorithm.Accumulator accumulator = algorithm.start();
+        ContentChunker chunker = chunks != null ? new ContentChunker(accumulator, algorithm, chunks.averageSize()) : null;
+        if (!read(file, attrs, chunker != null ? chunker : accumulator)) {
+            return 0;
+        }
+        if (chunker != null) {
+            long hash = chunker.digest();
+            chunks.write(hash, file, chunker.chunks());
+            return hash;
+        }
+        return accumulator.digest();
+    }
+
+    private boolean read(Path file, BasicFileAttributes attrs, HashAlgorithm.Accumulator accumulator) {
+        try {
+            if (attrs.isRegularFile() && attrs.size() >= mapThreshold) {
+                mappedRead(file, accumulator);
+            } else {
+                streamRead(file, accumulator);
+            }
+        } catch (IOException | InvalidPathException | UnsupportedOperationException e) {
+            metrics.failure();
+            return false;
+        }
+        metrics.bytes(attrs.size());
+        return true;
+    }
+
+    private void streamRead(Path file, HashAlgorithm.Accumulator accumulator) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = buffers.direct();
+            byte[] scratch = buffers.heap();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                accumulator.update(buffer, scratch);
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Maps the file window by window, so files larger than the address space can be hashed too.
+     * If the file is truncated while mapped, reading past its new end faults and the JVM throws {@link InternalError},
+     * it is reported as {@link IOException}, so the file gets hash {@code 0} like any file which can't be read.
+     */
+    private void mappedRead(Path file, HashAlgorithm.Accumulator accumulator) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_WINDOW) {
+                accumulator.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position)),
+                        buffers.heap());
+            }
+        } catch (InternalError e) {
+            throw new IOException("file " + file + " changed while mapped", e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ru.ifmo.rain.balahnin.walk;
+
+/**
+ * 32-bit FNV-1, the original hash of the walk.
+ */
+class Fnv1Hash32 implements HashAlgorithm {
+    static final String NAME = "fnv1-32";
+    private static final int PRIME = 0x01000193;
+    private static final int FIRST = 0x811c9dc5;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int digits() {
+        return 8;
+    }
+
+    @Override
+    public Accumulator start() {
+        return new Accumulator() {
+            private int hash = FIRST;
+
+            @Override
+            public void update(byte[] bytes, int offset, int length) {
+                int hash = this.hash;
+                for (int i = offset; i < offset + length; ++i) {
+                    hash *= PRIME;
+                    hash ^= (bytes[i] & 0xff);
+                }
+                this.hash = hash;
+            }
+
+            @Override
+            public long digest() {
+                return hash & 0xffffffffL;
+            }
+        };
+    }
+}
@@ -0,0 +1,42 @@
+package ru.ifmo.rain.balahnin.walk;
+
+/**
+ * 64-bit FNV-1a.
+ */
+class Fnv1aHash64 implements HashAlgorithm {
+    static final String NAME = "fnv1a-64";
+    private static final long PRIME = 0x100000001b3L;
+    private static final long FIRST = 0xcbf29ce484222325L;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int digits() {
+        return 16;
+    }
+
+    @Override
+    public Accumulator start() {
+        return new Accumulator() {
+            private long hash = FIRST;
+
+            @Override
+            public void update(byte[] bytes, int offset, int length) {
+                long hash = this.hash;
+                for (int i = offset; i < offset + length; ++i) {
+                    hash ^= (bytes[i] & 0xff);
+                    hash *= PRIME;
+                }
+                this.hash = hash;
+            }
+
+            @Override
+            public long digest() {
+                return hash;
+            }
+        };
+    }
+}
@@ -0,0 +1,259 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Concurrent replacement of {@link Files#walkFileTree(Path, java.util.Set, int, FileVisitor)}.
+ * Directories are listed lazily and their entries are split into batches visited as separate tasks,
+ * so idle threads steal parts of wide or deep directories. The visitor is called concurrently and in no fixed order,
+ * except that a directory is pre-visited before and post-visited after all its entries.
+ * Only {@link FileVisitResult#CONTINUE} and {@link FileVisitResult#SKIP_SUBTREE} results are supported.
+ * <p>
+ * All walks share one pool, so threads and their read buffers are reused across roots. A visitor may block on output
+ * of its root while other roots are walked concurrently, such waits must go through {@link ForkJoinPool#managedBlock},
+ * so the pool adds a thread meanwhile, as {@link AsyncWalkWriter} does.
+ * Directories are post-visited by completion of their entries' tasks, no thread waits for them.
+ * If the visitor fails, the walk still waits for all started tasks, so no visitor call happens after it returns.
+ */
+class ForkJoinWalker implements AutoCloseable {
+    private static final int BATCH = 64;
+    private static final LinkOption[] NOFOLLOW = {LinkOption.NOFOLLOW_LINKS};
+    private final ForkJoinPool pool;
+    private final boolean followLinks;
+    private final int maxDepth;
+
+    ForkJoinWalker(int parallelism, boolean followLinks, int maxDepth) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.followLinks = followLinks;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Walks the tree, returns when all visitor calls are finished.
+     *
+     * @throws IOException thrown by the visitor
+     */
+    void walk(Path start, FileVisitor<Path> visitor) throws IOException {
+        Walk walk = new Walk(visitor);
+        pool.invoke(new Visit(null, walk, List.of(start), 0, null));
+        walk.rethrow();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Visitor of one walk and the first failure of its calls.
+     * After a failure no more paths are visited, but the walk still ends only when all started tasks are complete.
+     */
+    private static class Walk {
+        final FileVisitor<Path> visitor;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Walk(FileVisitor<Path> visitor) {
+            this.visitor = visitor;
+        }
+
+        void fail(Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+
+        boolean failed() {
+            return failure.get() != null;
+        }
+
+        void rethrow() throws IOException {
+            Throwable e = failure.get();
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else if (e instanceof Error) {
+                throw (Error) e;
+            }
+        }
+    }
+
+    /**
+     * Directory being walked and all directories above it, to detect loops of followed links.
+     */
+    private static class Ancestor {
+        final Path path;
+        final Object key;
+        final Ancestor parent;
+
+        Ancestor(Path path, Object key, Ancestor parent) {
+            this.path = path;
+            this.key = key;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * Pre-visited directory, completed when its listing and all batches of its entries are complete,
+     * then it is post-visited. Completion propagates up without blocking, so the stack doesn't grow with the tree depth.
+     */
+    @SuppressWarnings("serial")
+    private static class Directory extends CountedCompleter<Void> {
+        private final Walk walk;
+        private final Path path;
+        private IOException failure;
+
+        Directory(Visit parent, Walk walk, Path path) {
+            super(parent);
+            this.walk = walk;
+            this.path = path;
+        }
+
+        @Override
+        public void compute() {
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (walk.failed()) {
+                return;
+            }
+            try {
+                walk.visitor.postVisitDirectory(path, failure);
+            } catch (IOException | RuntimeException | Error e) {
+                walk.fail(e);
+            }
+        }
+    }
+
+    /**
+     * Visits a batch of entries of one directory.
+     */
+    @SuppressWarnings("serial")
+    private class Visit extends CountedCompleter<Void> {
+        private final Walk walk;
+        private final List<Path> paths;
+        private final int depth;
+        private final Ancestor parent;
+
+        Visit(Directory directory, Walk walk, List<Path> paths, int depth, Ancestor parent) {
+            super(directory);
+            this.walk = walk;
+            this.paths = paths;
+            this.depth = depth;
+            this.parent = parent;
+        }
+
+        @Override
+        public void compute() {
+            try {
+                for (Path path : paths) {
+                    if (walk.failed()) {
+                        break;
+                    }
+                    visit(path);
+                }
+            } catch (IOException | RuntimeException | Error e) {
+                walk.fail(e);
+            }
+            tryComplete();
+        }
+
+        private void visit(Path path) throws IOException {
+            FileVisitor<Path> visitor = walk.visitor;
+            BasicFileAttributes attrs;
+            try {
+                attrs = attributes(path);
+            } catch (IOException e) {
+                visitor.visitFileFailed(path, e);
+                return;
+            }
+            if (!attrs.isDirectory() || depth >= maxDepth) {
+                visitor.visitFile(path, attrs);
+                return;
+            }
+            if (followLinks && loops(path, attrs.fileKey())) {
+                visitor.visitFileFailed(path, new FileSystemLoopException(path.toString()));
+                return;
+            }
+            DirectoryStream<Path> entries;
+            try {
+                entries = Files.newDirectoryStream(path);
+            } catch (IOException e) {
+                visitor.visitFileFailed(path, e);
+                return;
+            }
+            try (entries) {
+                if (visitor.preVisitDirectory(path, attrs) != FileVisitResult.CONTINUE) {
+                    return;
+                }
+                Ancestor ancestor = new Ancestor(path, attrs.fileKey(), parent);
+                Directory directory = new Directory(this, walk, path);
+                addToPendingCount(1);
+                try {
+                    List<Path> batch = new ArrayList<>(BATCH);
+                    for (Path entry : entries) {
+                        batch.add(entry);
+                        if (batch.size() == BATCH) {
+                            fork(directory, batch, ancestor);
+                            batch = new ArrayList<>(BATCH);
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        fork(directory, batch, ancestor);
+                    }
+                } catch (DirectoryIteratorException e) {
+                    directory.failure = e.getCause();
+                } finally {
+                    directory.tryComplete();
+                }
+            }
+        }
+
+        private void fork(Directory directory, List<Path> batch, Ancestor ancestor) {
+            directory.addToPendingCount(1);
+            new Visit(directory, walk, batch, depth + 1, ancestor).fork();
+        }
+
+        private BasicFileAttributes attributes(Path path) throws IOException {
+            if (!followLinks) {
+                return Files.readAttributes(path, BasicFileAttributes.class, NOFOLLOW);
+            }
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                return Files.readAttributes(path, BasicFileAttributes.class, NOFOLLOW);
+            }
+        }
+
+        private boolean loops(Path path, Object key) {
+            for (Ancestor ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+                if (key != null && ancestor.key != null) {
+                    if (key.equals(ancestor.key)) {
+                        return true;
+                    }
+                } else {
+                    try {
+                        if (Files.isSameFile(path, ancestor.path)) {
+                            return true;
+                        }
+                    } catch (IOException | SecurityException ignored) {
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming hash algorithm used to hash walked files.
+ */
+interface HashAlgorithm {
+    /**
+     * Name of the algorithm, as accepted by {@link #forName(String)}.
+     */
+    String name();
+
+    /**
+     * Number of hexadecimal digits in the printed hash.
+     */
+    int digits();
+
+    /**
+     * Creates accumulator for hashing one file.
+     */
+    Accumulator start();
+
+    static HashAlgorithm forName(String name) {
+        switch (name) {
+            case Fnv1Hash32.NAME:
+                return new Fnv1Hash32();
+            case Fnv1aHash64.NAME:
+                return new Fnv1aHash64();
+            case XxHash64.NAME:
+                return new XxHash64();
+            case WordHash64.NAME:
+                return new WordHash64();
+            default:
+                throw new IllegalArgumentException("unknown hash algorithm " + name + ", expected one of "
+                        + String.join(", ", Fnv1Hash32.NAME, Fnv1aHash64.NAME, XxHash64.NAME, WordHash64.NAME));
+        }
+    }
+
+    interface Accumulator {
+        void update(byte[] bytes, int offset, int length);
+
+        /**
+         * Consumes all remaining bytes of the buffer, copying them through {@code scratch}.
+         */
+        default void update(ByteBuffer buffer, byte[] scratch) {
+            while (buffer.hasRemaining()) {
+                int length = Math.min(buffer.remaining(), scratch.length);
+                buffer.get(scratch, 0, length);
+                update(scratch, 0, length);
+            }
+        }
+
+        /**
+         * Hash of all consumed bytes, must fit into {@link #digits()} hexadecimal digits.
+         */
+        long digest();
+    }
+}
@@ -0,0 +1,40 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures in-memory throughput of every {@link HashAlgorithm}.
+ * Usage: {@code HashBenchmark [megabytes [rounds]]}.
+ */
+public class HashBenchmark {
+    private static final int CHUNK = 1 << 16;
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        byte[] data = new byte[megabytes << 20];
+        new Random(4242).nextBytes(data);
+
+        List<HashAlgorithm> algorithms = List.of(new Fnv1Hash32(), new Fnv1aHash64(), new XxHash64(), new WordHash64());
+        for (HashAlgorithm algorithm : algorithms) {
+            long digest = run(algorithm, data);
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < rounds; ++i) {
+                long start = System.nanoTime();
+                sink = run(algorithm, data);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.println(String.format("%-14s %10.1f MB/s  (%x)", algorithm.name(), megabytes * 1e9 / best, digest));
+        }
+    }
+
+    private static long run(HashAlgorithm algorithm, byte[] data) {
+        HashAlgorithm.Accumulator accumulator = algorithm.start();
+        for (int offset = 0; offset < data.length; offset += CHUNK) {
+            accumulator.update(data, offset, Math.min(CHUNK, data.length - offset));
+        }
+        return accumulator.digest();
+    }
+}
@@ -0,0 +1,122 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashes of earlier walks, valid while size, modification time and file key of a file stay the same.
+ * Stored as UTF-8 lines {@code algorithm hash size mtime fileKey path} separated by tabs.
+ * Only entries used by the current walk are saved back, so entries of removed, renamed or no longer walked files
+ * don't pile up.
+ */
+class HashCache {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    static HashCache load(Path file) throws IOException {
+        HashCache cache = new HashCache();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 6);
+                if (parts.length != 6) {
+                    continue;
+                }
+                try {
+                    cache.entries.put(parts[5], new Entry(
+                            parts[0],
+                            Long.parseUnsignedLong(parts[1], 16),
+                            Long.parseLong(parts[2]),
+                            Long.parseLong(parts[3]),
+                            parts[4]
+                    ));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } catch (NoSuchFileException ignored) {
+        }
+        return cache;
+    }
+
+    void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry value = entry.getValue();
+                if (!value.used) {
+                    continue;
+                }
+                writer.write(String.format("%s\t%x\t%d\t%d\t%s\t%s", value.algorithm, value.hash, value.size, value.modified, value.fileKey, entry.getKey()));
+                writer.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    Long get(HashAlgorithm algorithm, Path file, BasicFileAttributes attrs) {
+        Entry entry = entries.get(key(file));
+        if (entry != null && entry.algorithm.equals(algorithm.name()) && entry.matches(attrs)) {
+            entry.used = true;
+            hits.incrementAndGet();
+            return entry.hash;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    void put(HashAlgorithm algorithm, Path file, BasicFileAttributes attrs, long hash) {
+        Entry entry = new Entry(algorithm.name(), hash, attrs.size(), modified(attrs), String.valueOf(attrs.fileKey()));
+        entry.used = true;
+        entries.put(key(file), entry);
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static long modified(BasicFileAttributes attrs) {
+        return attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static class Entry {
+        private final String algorithm;
+        private final long hash;
+        private final long size;
+        private final long modified;
+        private final String fileKey;
+        private volatile boolean used;
+
+        Entry(String algorithm, long hash, long size, long modified, String fileKey) {
+            this.algorithm = algorithm;
+            this.hash = hash;
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && modified == modified(attrs) && Objects.equals(fileKey, String.valueOf(attrs.fileKey()));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashes every physical file once per walk, however many hard links point to it.
+ * Files are identified by {@link BasicFileAttributes#fileKey()}; where the link count is available,
+ * only files with several links are remembered.
+ */
+class LinkDeduplicator {
+    private static final boolean UNIX = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+    private final Map<Object, CompletableFuture<Long>> hashes = new ConcurrentHashMap<>();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    /**
+     * Returns hash of the file, computing it by {@code hasher} only for the first path of the file.
+     * Concurrent callers for the same file wait for the first one.
+     */
+    long hash(Path file, BasicFileAttributes attrs, LongSupplier hasher) {
+        Object key = attrs.fileKey();
+        if (key == null || !hasLinks(file)) {
+            return hasher.getAsLong();
+        }
+        CompletableFuture<Long> created = new CompletableFuture<>();
+        CompletableFuture<Long> existing = hashes.putIfAbsent(key, created);
+        if (existing != null) {
+            reused.incrementAndGet();
+            savedBytes.addAndGet(attrs.size());
+            return existing.join();
+        }
+        try {
+            long hash = hasher.getAsLong();
+            created.complete(hash);
+            return hash;
+        } catch (RuntimeException | Error e) {
+            hashes.remove(key, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static boolean hasLinks(Path file) {
+        if (!UNIX) {
+            return true;
+        }
+        try {
+            return (Integer) Files.getAttribute(file, "unix:nlink", LinkOption.NOFOLLOW_LINKS) > 1;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    int files() {
+        return hashes.size();
+    }
+
+    long reused() {
+        return reused.get();
+    }
+
+    long savedBytes() {
+        return savedBytes.get();
+    }
+}
@@ -0,0 +1,177 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Builds directory hashes of one walked root: hash of a directory is the hash of names, kinds and hashes
+ * of its children sorted by name, so it doesn't depend on listing order and two trees can be compared top-down.
+ * <p>
+ * In the walk output directories are listed after their contents as {@code <hash> <directory>/}.
+ * Running this class as {@code MerkleTree <left output> <right output>} compares two such outputs,
+ * descending only into differing directories, and prints {@code ~}, {@code +} or {@code -} with the differing paths.
+ */
+public class MerkleTree {
+    private static final String SEPARATOR = File.separator;
+    private final HashAlgorithm algorithm;
+    private final Deque<List<Child>> directories = new ArrayDeque<>();
+
+    MerkleTree(HashAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Starts collecting children of a directory.
+     */
+    void enter() {
+        directories.push(new ArrayList<>());
+    }
+
+    /**
+     * Adds child to the current directory, if any.
+     */
+    void add(Path path, boolean directory, CompletableFuture<Long> hash) {
+        Path name = path.getFileName();
+        if (!directories.isEmpty() && name != null) {
+            directories.peek().add(new Child(name.toString(), directory, hash));
+        }
+    }
+
+    /**
+     * Completes the current directory.
+     *
+     * @return hash of the directory, available when hashes of all its children are
+     */
+    CompletableFuture<Long> leave() {
+        List<Child> children = directories.pop();
+        return CompletableFuture.allOf(children.stream().map(child -> child.hash).toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> combine(children));
+    }
+
+    private long combine(List<Child> children) {
+        children.sort(Comparator.comparing(child -> child.name));
+        HashAlgorithm.Accumulator accumulator = algorithm.start();
+        byte[] entry = new byte[10];
+        for (Child child : children) {
+            byte[] name = child.name.getBytes(StandardCharsets.UTF_8);
+            accumulator.update(name, 0, name.length);
+            long hash = child.hash.join();
+            entry[0] = 0;
+            entry[1] = (byte) (child.directory ? 'd' : 'f');
+            for (int i = 0; i < 8; ++i) {
+                entry[2 + i] = (byte) (hash >>> 8 * i);
+            }
+            accumulator.update(entry, 0, entry.length);
+        }
+        return accumulator.digest();
+    }
+
+    static String directoryName(Path directory) {
+        String name = directory.toString();
+        return name.endsWith(SEPARATOR) ? name : name + SEPARATOR;
+    }
+
+    private static class Child {
+        private final String name;
+        private final boolean directory;
+        private final CompletableFuture<Long> hash;
+
+        Child(String name, boolean directory, CompletableFuture<Long> hash) {
+            this.name = name;
+            this.directory = directory;
+            this.hash = hash;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args == null || args.length != 2 || args[0] == null || args[1] == null) {
+            System.err.println("usage: MerkleTree <left output> <right output>");
+            return;
+        }
+        try {
+            Listing left = new Listing(Paths.get(args[0]));
+            Listing right = new Listing(Paths.get(args[1]));
+            TreeSet<String> roots = new TreeSet<>(left.roots());
+            roots.addAll(right.roots());
+            for (String root : roots) {
+                compare(left, right, root);
+            }
+        } catch (IOException e) {
+            System.err.println("can't read walk output: " + e.getMessage());
+        }
+    }
+
+    private static void compare(Listing left, Listing right, String path) {
+        String leftHash = left.hashes.get(path);
+        String rightHash = right.hashes.get(path);
+        if (leftHash == null) {
+            System.out.println("+ " + path);
+        } else if (rightHash == null) {
+            System.out.println("- " + path);
+        } else if (!leftHash.equals(rightHash)) {
+            if (!path.endsWith(SEPARATOR)) {
+                System.out.println("~ " + path);
+                return;
+            }
+            TreeSet<String> children = new TreeSet<>(left.children.getOrDefault(path, List.of()));
+            children.addAll(right.children.getOrDefault(path, List.of()));
+            for (String child : children) {
+                compare(left, right, child);
+            }
+        }
+    }
+
+    private static class Listing {
+        private final Map<String, String> hashes = new HashMap<>();
+        private final Map<String, List<String>> children = new HashMap<>();
+
+        Listing(Path output) throws IOException {
+            try (BufferedReader reader = Files.newBufferedReader(output, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int space = line.indexOf(' ');
+                    if (space > 0) {
+                        hashes.put(line.substring(space + 1), line.substring(0, space));
+                    }
+                }
+            }
+            for (String path : hashes.keySet()) {
+                String parent = parent(path);
+                if (parent != null && hashes.containsKey(parent)) {
+                    children.computeIfAbsent(parent, key -> new ArrayList<>()).add(path);
+                }
+            }
+        }
+
+        List<String> roots() {
+            List<String> roots = new ArrayList<>();
+            for (String path : hashes.keySet()) {
+                String parent = parent(path);
+                if (parent == null || !hashes.containsKey(parent)) {
+                    roots.add(path);
+                }
+            }
+            return roots;
+        }
+
+        private static String parent(String path) {
+            String trimmed = path.endsWith(SEPARATOR) ? path.substring(0, path.length() - SEPARATOR.length()) : path;
+            int last = trimmed.lastIndexOf(SEPARATOR);
+            return last < 0 ? null : trimmed.substring(0, last + SEPARATOR.length());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.util.List;
+
+/**
+ * Several hash algorithms fed from one read of every file, so each extra digest costs CPU time but no I/O.
+ */
+class MultiHash {
+    private final HashAlgorithm[] algorithms;
+
+    MultiHash(List<HashAlgorithm> algorithms) {
+        this.algorithms = algorithms.toArray(new HashAlgorithm[0]);
+    }
+
+    int[] digits() {
+        int[] digits = new int[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            digits[i] = algorithms[i].digits();
+        }
+        return digits;
+    }
+
+    Accumulator start() {
+        HashAlgorithm.Accumulator[] accumulators = new HashAlgorithm.Accumulator[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            accumulators[i] = algorithms[i].start();
+        }
+        return new Accumulator(accumulators);
+    }
+
+    /**
+     * Passes every consumed block to all algorithms, digest of the first one is the {@link #digest()}.
+     */
+    static class Accumulator implements HashAlgorithm.Accumulator {
+        private final HashAlgorithm.Accumulator[] accumulators;
+
+        private Accumulator(HashAlgorithm.Accumulator[] accumulators) {
+            this.accumulators = accumulators;
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            for (HashAlgorithm.Accumulator accumulator : accumulators) {
+                accumulator.update(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public long digest() {
+            return accumulators[0].digest();
+        }
+
+        long[] digests() {
+            long[] digests = new long[accumulators.length];
+            for (int i = 0; i < accumulators.length; i++) {
+                digests[i] = accumulators[i].digest();
+            }
+            return digests;
+        }
+    }
+}
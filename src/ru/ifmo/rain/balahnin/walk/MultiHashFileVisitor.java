@@ -0,0 +1,47 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import static java.nio.file.FileVisitResult.CONTINUE;
+
+/**
+ * Lists every file with hashes of several algorithms computed in one read, see {@link MultiHash}.
+ */
+class MultiHashFileVisitor extends FNVHashFileVisitor {
+    private final MultiHash hashes;
+    private final MultiRecordFormat multiFormat;
+    private final ExecutorService workers;
+
+    /**
+     * @param workers hash files on this pool, {@code null} to hash on the walking thread
+     */
+    MultiHashFileVisitor(AsyncWalkWriter.Segment output, FileHasher hasher, MultiRecordFormat format,
+                         WalkFilter filter, boolean followLinks, MultiHash hashes, ExecutorService workers) {
+        super(output, hasher, format, null, filter, followLinks);
+        this.hashes = hashes;
+        this.multiFormat = format;
+        this.workers = workers;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        if (accepts(file, attrs)) {
+            String name = file.toString();
+            if (workers != null) {
+                output.add(CompletableFuture.supplyAsync(() -> multiFormat.record(hasher.hash(file, attrs, hashes), name), workers)
+                        .exceptionally(e -> {
+                            hasher.metrics().failure();
+                            return multiFormat.record(0, name);
+                        }));
+            } else {
+                output.add(multiFormat.record(hasher.hash(file, attrs, hashes), name));
+            }
+        }
+        return CONTINUE;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.util.Arrays;
+
+/**
+ * Text output of {@link MultiHash}: lines {@code <hash> <hash> ... <file>} with hashes in the order of algorithms.
+ */
+class MultiRecordFormat implements RecordFormat {
+    private final int[] digits;
+
+    MultiRecordFormat(MultiHash hashes) {
+        this.digits = hashes.digits();
+    }
+
+    /**
+     * Record with all hashes equal to {@code hash}, used for files which can't be read.
+     */
+    @Override
+    public byte[] record(long hash, String file) {
+        long[] hashes = new long[digits.length];
+        Arrays.fill(hashes, hash);
+        return record(hashes, file);
+    }
+
+    byte[] record(long[] hashes, String file) {
+        return TextRecordFormat.record(hashes, digits, file);
+    }
+}
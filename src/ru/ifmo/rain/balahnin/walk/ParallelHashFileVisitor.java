@@ -0,0 +1,26 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Hashes visited files on a pool of worker threads.
+ * Traversal stays on the calling thread and is throttled by the bounded queue of the output segment,
+ * which is written strictly in visiting order.
+ */
+class ParallelHashFileVisitor extends FNVHashFileVisitor {
+    private final ExecutorService workers;
+
+    ParallelHashFileVisitor(AsyncWalkWriter.Segment output, FileHasher hasher, RecordFormat format, MerkleTree tree,
+                            WalkFilter filter, boolean followLinks, ExecutorService workers) {
+        super(output, hasher, format, tree, filter, followLinks);
+        this.workers = workers;
+    }
+
+    @Override
+    CompletableFuture<Long> hash(Path file, BasicFileAttributes attrs) {
+        return CompletableFuture.supplyAsync(() -> hasher.hash(file, attrs), workers);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.IOException;
+
+/**
+ * Turns walk results into bytes of the output file.
+ * Records may be produced concurrently by hashing workers.
+ */
+interface RecordFormat {
+    byte[] record(long hash, String file);
+
+    /**
+     * Adds records written after all others, called once when the walk ends.
+     */
+    default void end(AsyncWalkWriter.Segment output) throws IOException {
+    }
+}
@@ -1,60 +1,243 @@
 package ru.ifmo.rain.balahnin.walk;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.*;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class RecursiveWalk {
     public static void main(String[] args) {
-        if (args == null) {
-            System.err.println("need 2 arguments - input and output files names, now - 0");
-            return;
-        } else if (args.length != 2) {
-            System.err.println("need 2 arguments - input and output files names, now - " + args.length);
-            return;
-        } else if (args[0] == null | args[1] == null) {
-            System.err.println("args is null");
+        WalkOptions options;
+        try {
+            options = WalkOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
             return;
         }
 
         Path out;
         try {
-            out = Paths.get(args[1]);
+            out = Paths.get(options.output);
             if (out.getParent() != null) {
                 Files.createDirectories(out.getParent());
             }
         } catch (InvalidPathException e) {
-            System.err.println("Incorrect path to file: " + args[1]);
+            System.err.println("Incorrect path to file: " + options.output);
             return;
         } catch (IOException e) {
             System.err.println("Error with path create: " + e.getMessage());
             return;
         }
 
-        try (BufferedReader input = new BufferedReader(new FileReader(args[0], Charset.forName("UTF-8")))) {
-            try (BufferedWriter writer = Files.newBufferedWriter(out)) {
+        HashCache cache = null;
+        if (options.cache != null) {
+            try {
+                cache = HashCache.load(Paths.get(options.cache));
+            } catch (InvalidPathException | IOException e) {
+                System.err.println("can't load hash cache, hashing everything: " + e.getMessage());
+                cache = new HashCache();
+            }
+        }
+        LinkDeduplicator links = options.dedup ? new LinkDeduplicator() : null;
+        WalkMetrics metrics = new WalkMetrics();
+
+        RecordFormat format;
+        try {
+            format = options.changes != null
+                    ? ChangeJournal.load(Paths.get(options.changes), options.algorithm.digits())
+                    : options.binary ? new BinaryRecordFormat()
+                    : options.hashes != null ? new MultiRecordFormat(options.hashes)
+                    : new TextRecordFormat(options.algorithm.digits());
+            if (options.sorted) {
+                format = new SortedRecordFormat(format);
+            }
+        } catch (InvalidPathException | IOException e) {
+            System.err.println("can't read previous output " + options.changes + ": " + e.getMessage());
+            return;
+        }
+
+        ChunkManifest chunks = null;
+        if (options.chunks != null) {
+            try {
+                chunks = new ChunkManifest(Paths.get(options.chunks), options.chunkSize, options.algorithm.digits());
+            } catch (InvalidPathException | IOException e) {
+                System.err.println("can't create chunk manifest " + options.chunks + ": " + e.getMessage());
+                return;
+            }
+        }
+        Checkpoints checkpoints = null;
+        String resumeAfter = null;
+        if (options.checkpoint != null) {
+            try {
+                checkpoints = new Checkpoints(Paths.get(options.checkpoint), options.checkpointInterval, options.resume);
+                resumeAfter = checkpoints.last(out, options.binary);
+            } catch (InvalidPathException | IOException e) {
+                System.err.println("can't resume from checkpoint " + options.checkpoint + ": " + e.getMessage());
+                return;
+            }
+        }
+        int resumedRoot = checkpoints != null && checkpoints.resumed() != null ? checkpoints.resumed().root : 0;
+        BufferPool buffers = new BufferPool(options.bufferSize, metrics);
+        FileHasher hasher = new FileHasher(options.algorithm, options.mapThreshold, cache, links, metrics, chunks, buffers);
+
+        ExecutorService workers = options.threads > 1 ? Executors.newFixedThreadPool(options.threads) : null;
+        AsyncFileReader reader = options.async > 0 ? new AsyncFileReader(options.async, buffers) : null;
+        ForkJoinWalker walker = options.fork > 0 ? new ForkJoinWalker(options.fork, options.followLinks, options.maxDepth) : null;
+        ExecutorService roots = options.roots > 1 ? Executors.newFixedThreadPool(options.roots) : null;
+        ScheduledExecutorService reporter = options.progress > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "walk-progress");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        if (reporter != null) {
+            reporter.scheduleAtFixedRate(() -> report(metrics, options.progressJson), options.progress, options.progress, TimeUnit.SECONDS);
+        }
+        metrics.register();
+        try (BufferedReader input = new BufferedReader(new FileReader(options.input, Charset.forName("UTF-8")))) {
+            try (AsyncWalkWriter writer = new AsyncWalkWriter(out, options.queue, options.roots, options.gzip, checkpoints)) {
+                metrics.queueDepth(writer::pending);
                 String path;
-                FileVisitor<Path> visitor = new FNVHashFileVisitor(writer);
-                while ((path = input.readLine()) != null) {
+                for (int index = 0; (path = input.readLine()) != null; index++) {
+                    if (index < resumedRoot) {
+                        continue;
+                    }
+                    AsyncWalkWriter.Segment segment = writer.segment();
+                    MerkleTree tree = options.merkle ? new MerkleTree(options.algorithm) : null;
+                    FNVHashFileVisitor visitor;
+                    if (options.hashes != null) {
+                        visitor = new MultiHashFileVisitor(segment, hasher, (MultiRecordFormat) format, options.filter,
+                                options.followLinks, options.hashes, workers);
+                    } else if (workers != null) {
+                        visitor = new ParallelHashFileVisitor(segment, hasher, format, tree, options.filter, options.followLinks, workers);
+                    } else if (reader != null) {
+                        visitor = new AsyncHashFileVisitor(segment, hasher, format, tree, options.filter, options.followLinks, reader);
+                    } else {
+                        visitor = new FNVHashFileVisitor(segment, hasher, format, tree, options.filter, options.followLinks);
+                    }
+                    if (index == resumedRoot) {
+                        visitor.resume(resumeAfter);
+                    }
+                    String root = path;
+                    if (roots != null) {
+                        roots.execute(() -> walk(root, visitor, options, walker));
+                    } else {
+                        walk(root, visitor, options, walker);
+                    }
+                }
+                await(roots);
+                await(workers);
+                if (reader != null) {
                     try {
-                        Files.walkFileTree(Paths.get(path), visitor);
-                    } catch (InvalidPathException e) {
-                        writer.write("00000000 " + path);
-                        writer.newLine();
+                        reader.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("interrupted while waiting for walk to finish", e);
                     }
                 }
+                try (AsyncWalkWriter.Segment end = writer.segment()) {
+                    format.end(end);
+                }
             } catch (SecurityException e) {
-                System.err.println("doesn't enough rights for writing in file" + args[1]);
+                System.err.println("doesn't enough rights for writing in file" + options.output);
             } catch (IOException e) {
                 System.err.println("output exception " + e.getMessage());
             }
         } catch (NoSuchFileException e) {
-            System.err.println("File " + args[0] + "doesn't exist");
+            System.err.println("File " + options.input + "doesn't exist");
         } catch (IOException e) {
             System.err.println(e.getMessage());
+        } finally {
+            if (roots != null) {
+                roots.shutdownNow();
+            }
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+            if (reader != null) {
+                reader.close();
+            }
+            if (walker != null) {
+                walker.close();
+            }
+            if (reporter != null) {
+                reporter.shutdownNow();
+                report(metrics, options.progressJson);
+            }
+            metrics.unregister();
+            if (chunks != null) {
+                try {
+                    chunks.close();
+                } catch (IOException e) {
+                    System.err.println("can't write chunk manifest: " + e.getMessage());
+                }
+            }
+        }
+
+        if (links != null) {
+            System.err.println("hard links: " + links.files() + " files remembered, " + links.reused() + " paths reused, "
+                    + links.savedBytes() + " bytes not read");
+        }
+        if (cache != null) {
+            System.err.println("hash cache: " + cache.hits() + " hits, " + cache.misses() + " misses");
+            try {
+                cache.save(Paths.get(options.cache));
+            } catch (IOException e) {
+                System.err.println("can't save hash cache: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param walker walks the root concurrently, {@code null} to walk it on this thread
+     */
+    private static void walk(String root, FNVHashFileVisitor visitor, WalkOptions options, ForkJoinWalker walker) {
+        Set<FileVisitOption> visitOptions = options.followLinks
+                ? EnumSet.of(FileVisitOption.FOLLOW_LINKS)
+                : EnumSet.noneOf(FileVisitOption.class);
+        try (visitor.output) {
+            try {
+                while (true) {
+                    if (walker != null) {
+                        walker.walk(Paths.get(root), visitor);
+                    } else {
+                        Files.walkFileTree(Paths.get(root), visitOptions, options.maxDepth, visitor);
+                    }
+                    if (!visitor.restart()) {
+                        break;
+                    }
+                    System.err.println("last checkpointed file of " + root + " is gone, walking it again");
+                    visitor.output.rewind();
+                }
+            } catch (InvalidPathException e) {
+                visitor.hasher.metrics().failure();
+                visitor.write(0, root);
+            }
+        } catch (IOException e) {
+            System.err.println("can't walk " + root + ": " + e.getMessage());
+        }
+    }
+
+    private static void report(WalkMetrics metrics, boolean json) {
+        System.err.println(json ? metrics.toJson() : metrics.toText());
+    }
+
+    private static void await(ExecutorService executor) throws IOException {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for walk to finish", e);
         }
     }
-}
\ No newline at end of file
+}
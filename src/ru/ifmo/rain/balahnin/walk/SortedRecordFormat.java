@@ -0,0 +1,227 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Writes records of another format ordered by UTF-8 bytes of paths, like {@code LC_ALL=C sort},
+ * so outputs of different walks can be compared by merging.
+ * Records are sorted in memory in runs of about 64 MiB, full runs are spilled to temporary files
+ * and merged when the walk ends.
+ */
+class SortedRecordFormat implements RecordFormat {
+    private static final long RUN_BYTES = 1 << 26;
+    private static final Comparator<Entry> ORDER = (a, b) -> Arrays.compareUnsigned(a.key, b.key);
+
+    private final RecordFormat format;
+    private final List<Path> runs = new ArrayList<>();
+    private List<Entry> records = new ArrayList<>();
+    private long bytes;
+    private IOException error;
+
+    SortedRecordFormat(RecordFormat format) {
+        this.format = format;
+    }
+
+    @Override
+    public byte[] record(long hash, String file) {
+        byte[] record = format.record(hash, file);
+        if (record.length > 0) {
+            Entry entry = new Entry(file.getBytes(StandardCharsets.UTF_8), record);
+            List<Entry> full = null;
+            synchronized (this) {
+                records.add(entry);
+                bytes += entry.key.length + record.length;
+                if (bytes >= RUN_BYTES) {
+                    full = records;
+                    records = new ArrayList<>();
+                    bytes = 0;
+                }
+            }
+            if (full != null) {
+                spill(full);
+            }
+        }
+        return new byte[0];
+    }
+
+    private void spill(List<Entry> run) {
+        run.sort(ORDER);
+        try {
+            Path file = Files.createTempFile("walk-sort", ".run");
+            file.toFile().deleteOnExit();
+            synchronized (this) {
+                runs.add(file);
+            }
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+                for (Entry entry : run) {
+                    entry.write(output);
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void end(AsyncWalkWriter.Segment output) throws IOException {
+        try {
+            if (error != null) {
+                throw new IOException("can't sort output: " + error.getMessage(), error);
+            }
+            records.sort(ORDER);
+            if (runs.isEmpty()) {
+                for (Entry entry : records) {
+                    output.add(entry.record);
+                }
+            } else {
+                merge(output);
+            }
+            records = new ArrayList<>();
+            format.end(output);
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            runs.clear();
+        }
+    }
+
+    /**
+     * Merges all spilled runs with records left in memory, equal paths keep the order they were added in.
+     */
+    private void merge(AsyncWalkWriter.Segment output) throws IOException {
+        List<Run> sources = new ArrayList<>();
+        PriorityQueue<Run> heads = new PriorityQueue<>(Comparator.<Run, Entry>comparing(run -> run.head, ORDER)
+                .thenComparingInt(run -> run.index));
+        try {
+            for (Path file : runs) {
+                sources.add(new FileRun(sources.size(), file));
+            }
+            sources.add(new MemoryRun(sources.size(), records));
+            for (Run run : sources) {
+                if (run.advance()) {
+                    heads.add(run);
+                }
+            }
+            while (!heads.isEmpty()) {
+                Run run = heads.poll();
+                output.add(run.head.record);
+                if (run.advance()) {
+                    heads.add(run);
+                }
+            }
+        } finally {
+            for (Run run : sources) {
+                run.close();
+            }
+        }
+    }
+
+    private static class Entry {
+        final byte[] key;
+        final byte[] record;
+
+        Entry(byte[] key, byte[] record) {
+            this.key = key;
+            this.record = record;
+        }
+
+        void write(DataOutputStream output) throws IOException {
+            output.writeInt(key.length);
+            output.write(key);
+            output.writeInt(record.length);
+            output.write(record);
+        }
+
+        /**
+         * @return entry, {@code null} at the end of the run
+         */
+        static Entry read(DataInputStream input) throws IOException {
+            int length;
+            try {
+                length = input.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            byte[] key = input.readNBytes(length);
+            byte[] record = input.readNBytes(input.readInt());
+            return new Entry(key, record);
+        }
+    }
+
+    /**
+     * Sorted records of one run, read one after another.
+     */
+    private abstract static class Run implements AutoCloseable {
+        final int index;
+        Entry head;
+
+        Run(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Moves {@link #head} to the next record.
+         *
+         * @return whether there is one
+         */
+        abstract boolean advance() throws IOException;
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static class FileRun extends Run {
+        private final DataInputStream input;
+
+        FileRun(int index, Path file) throws IOException {
+            super(index);
+            input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            head = Entry.read(input);
+            return head != null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    private static class MemoryRun extends Run {
+        private final List<Entry> records;
+        private int next;
+
+        MemoryRun(int index, List<Entry> records) {
+            super(index);
+            this.records = records;
+        }
+
+        @Override
+        boolean advance() {
+            head = next < records.size() ? records.get(next++) : null;
+            return head != null;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Accumulator consuming input by 32-byte stripes of four little-endian 64-bit words.
+ * Bytes which don't fill a whole stripe are kept until more input arrives or {@link #digest()} is called.
+ */
+abstract class StripedAccumulator implements HashAlgorithm.Accumulator {
+    static final int STRIPE = 32;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] tail = new byte[STRIPE];
+    private int tailLength;
+    private long total;
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        total += length;
+        if (tailLength > 0) {
+            int copied = Math.min(length, STRIPE - tailLength);
+            System.arraycopy(bytes, offset, tail, tailLength, copied);
+            tailLength += copied;
+            offset += copied;
+            length -= copied;
+            if (tailLength < STRIPE) {
+                return;
+            }
+            stripe(tail, 0);
+            tailLength = 0;
+        }
+        int end = offset + length - length % STRIPE;
+        for (; offset < end; offset += STRIPE) {
+            stripe(bytes, offset);
+        }
+        tailLength = length % STRIPE;
+        System.arraycopy(bytes, offset, tail, 0, tailLength);
+    }
+
+    @Override
+    public long digest() {
+        return finish(tail, tailLength, total);
+    }
+
+    /**
+     * Consumes {@link #STRIPE} bytes starting from {@code offset}.
+     */
+    abstract void stripe(byte[] bytes, int offset);
+
+    /**
+     * Computes hash of the whole input.
+     *
+     * @param tail   last bytes of input which don't fill a stripe
+     * @param length number of bytes in tail
+     * @param total  length of the whole input
+     */
+    abstract long finish(byte[] tail, int length, long total);
+
+    static long readLong(byte[] bytes, int offset) {
+        return (long) LONGS.get(bytes, offset);
+    }
+
+    static long readInt(byte[] bytes, int offset) {
+        return (int) INTS.get(bytes, offset) & 0xffffffffL;
+    }
+}
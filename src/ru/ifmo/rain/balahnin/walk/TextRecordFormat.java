@@ -0,0 +1,67 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Default output: lines {@code <hash> <file>} with the hash in lowercase hexadecimal.
+ */
+class TextRecordFormat implements RecordFormat {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private final int digits;
+
+    TextRecordFormat(int digits) {
+        this.digits = digits;
+    }
+
+    @Override
+    public byte[] record(long hash, String file) {
+        return record(hash, digits, file);
+    }
+
+    static byte[] record(long hash, int digits, String file) {
+        return record("", hash, digits, file);
+    }
+
+    /**
+     * Formats line {@code <prefix><hash> <file>} with the line separator.
+     */
+    static byte[] record(String prefix, long hash, int digits, String file) {
+        byte[] head = prefix.getBytes(StandardCharsets.UTF_8);
+        byte[] path = file.getBytes(StandardCharsets.UTF_8);
+        byte[] record = new byte[head.length + digits + 1 + path.length + LINE_SEPARATOR.length];
+        System.arraycopy(head, 0, record, 0, head.length);
+        for (int i = head.length + digits - 1; i >= head.length; --i, hash >>>= 4) {
+            record[i] = HEX[(int) (hash & 0xf)];
+        }
+        int position = head.length + digits;
+        record[position++] = ' ';
+        System.arraycopy(path, 0, record, position, path.length);
+        System.arraycopy(LINE_SEPARATOR, 0, record, position + path.length, LINE_SEPARATOR.length);
+        return record;
+    }
+
+    /**
+     * Formats line {@code <hash> <hash> ... <file>} with the line separator.
+     */
+    static byte[] record(long[] hashes, int[] digits, String file) {
+        byte[] path = file.getBytes(StandardCharsets.UTF_8);
+        int length = path.length + LINE_SEPARATOR.length;
+        for (int count : digits) {
+            length += count + 1;
+        }
+        byte[] record = new byte[length];
+        int position = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            long hash = hashes[i];
+            for (int j = position + digits[i] - 1; j >= position; --j, hash >>>= 4) {
+                record[j] = HEX[(int) (hash & 0xf)];
+            }
+            position += digits[i];
+            record[position++] = ' ';
+        }
+        System.arraycopy(path, 0, record, position, path.length);
+        System.arraycopy(LINE_SEPARATOR, 0, record, position + path.length, LINE_SEPARATOR.length);
+        return record;
+    }
+}
@@ -0,0 +1,230 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Runs {@link RecursiveWalk} in different modes over generated trees and reports files/s and MB/s.
+ * Usage: {@code WalkBenchmark <work directory> [<json report> [scale [rounds [cold]]]]}.
+ * <p>
+ * Trees are generated once inside the work directory and reused by later runs:
+ * <ul>
+ *     <li>{@code tiny} - many 1 KiB files in a hundred directories</li>
+ *     <li>{@code huge} - a few files of {@code 64 * scale} MiB</li>
+ *     <li>{@code deep} - a chain of nested directories with small files on every level</li>
+ *     <li>{@code wide} - one directory with many 4 KiB files</li>
+ * </ul>
+ * By default the page cache stays warm between rounds, so results show the cost of hashing and walking, not of the disk.
+ * With {@code cold} the page cache is dropped before every round, which needs root on Linux.
+ */
+public class WalkBenchmark {
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final String[][] MODES = {
+            {},
+            {"-threads", Integer.toString(THREADS)},
+            {"-mmap", Integer.toString(1 << 20)},
+            {"-async", "4"},
+            {"-async", "64"},
+            {"-hash", XxHash64.NAME},
+            {"-hash", WordHash64.NAME, "-threads", Integer.toString(THREADS), "-mmap", Integer.toString(1 << 20)},
+    };
+
+    public static void main(String[] args) throws IOException {
+        if (args == null || args.length < 1 || args.length > 5) {
+            System.err.println("usage: WalkBenchmark <work directory> [<json report> [scale [rounds [cold]]]]");
+            return;
+        }
+        Path root = Paths.get(args[0]);
+        Path report = args.length > 1 && !args[1].isEmpty() ? Paths.get(args[1]) : null;
+        int scale = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        boolean cold = args.length > 4 && args[4].equals("cold");
+
+        List<Result> results = new ArrayList<>();
+        for (Tree tree : trees(root, scale)) {
+            tree.generate();
+            long files;
+            long bytes;
+            try (Stream<Path> walk = Files.walk(tree.root)) {
+                long[] counts = walk.filter(Files::isRegularFile)
+                        .mapToLong(WalkBenchmark::size)
+                        .collect(() -> new long[2], (acc, size) -> {
+                            acc[0]++;
+                            acc[1] += size;
+                        }, (a, b) -> {
+                            a[0] += b[0];
+                            a[1] += b[1];
+                        });
+                files = counts[0];
+                bytes = counts[1];
+            }
+            Path input = root.resolve(tree.name + ".in");
+            Files.write(input, List.of(tree.root.toString()), StandardCharsets.UTF_8);
+            Path output = root.resolve(tree.name + ".out");
+
+            for (String[] mode : MODES) {
+                List<String> command = new ArrayList<>(List.of(mode));
+                command.add(input.toString());
+                command.add(output.toString());
+                String[] walkArgs = command.toArray(new String[0]);
+
+                RecursiveWalk.main(walkArgs);
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < rounds; ++i) {
+                    if (cold) {
+                        dropCaches();
+                    }
+                    long start = System.nanoTime();
+                    RecursiveWalk.main(walkArgs);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                Result result = new Result(tree.name, String.join(" ", mode), files, bytes, best / 1e9);
+                System.out.println(result);
+                results.add(result);
+            }
+        }
+
+        if (report != null) {
+            try (BufferedWriter writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+                writer.write("[");
+                for (int i = 0; i < results.size(); ++i) {
+                    writer.write(i == 0 ? "\n  " : ",\n  ");
+                    writer.write(results.get(i).toJson());
+                }
+                writer.write("\n]\n");
+            }
+        }
+    }
+
+    private static List<Tree> trees(Path root, int scale) {
+        return List.of(
+                new Tree(root, "tiny", dir -> {
+                    for (int d = 0; d < 100; ++d) {
+                        Path sub = Files.createDirectories(dir.resolve("d" + d));
+                        for (int f = 0; f < 200 * scale; ++f) {
+                            fill(sub.resolve("f" + f), 1 << 10);
+                        }
+                    }
+                }),
+                new Tree(root, "huge", dir -> {
+                    for (int f = 0; f < 4; ++f) {
+                        fill(dir.resolve("f" + f), (64L << 20) * scale);
+                    }
+                }),
+                new Tree(root, "deep", dir -> {
+                    Path level = dir;
+                    for (int d = 0; d < 64 * scale; ++d) {
+                        level = Files.createDirectories(level.resolve("d" + d));
+                        for (int f = 0; f < 16; ++f) {
+                            fill(level.resolve("f" + f), 8 << 10);
+                        }
+                    }
+                }),
+                new Tree(root, "wide", dir -> {
+                    for (int f = 0; f < 20000 * scale; ++f) {
+                        fill(dir.resolve("f" + f), 4 << 10);
+                    }
+                })
+        );
+    }
+
+    private static void dropCaches() throws IOException {
+        try {
+            Runtime.getRuntime().exec(new String[]{"sync"}).waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Files.write(Paths.get("/proc/sys/vm/drop_caches"), "3".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void fill(Path file, long size) throws IOException {
+        Random random = new Random(file.toString().hashCode());
+        byte[] chunk = new byte[(int) Math.min(size, 1 << 20)];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+    }
+
+    private interface Generator {
+        void generate(Path dir) throws IOException;
+    }
+
+    private static class Tree {
+        private final String name;
+        private final Path root;
+        private final Generator generator;
+
+        Tree(Path parent, String name, Generator generator) {
+            this.name = name;
+            this.root = parent.resolve(name);
+            this.generator = generator;
+        }
+
+        void generate() throws IOException {
+            Path done = root.resolveSibling(name + ".done");
+            if (Files.exists(done)) {
+                return;
+            }
+            Files.createDirectories(root);
+            generator.generate(root);
+            Files.createFile(done);
+        }
+    }
+
+    private static class Result {
+        private final String tree;
+        private final String mode;
+        private final long files;
+        private final long bytes;
+        private final double seconds;
+
+        Result(String tree, String mode, long files, long bytes, double seconds) {
+            this.tree = tree;
+            this.mode = mode;
+            this.files = files;
+            this.bytes = bytes;
+            this.seconds = seconds;
+        }
+
+        double filesPerSecond() {
+            return files / seconds;
+        }
+
+        double megabytesPerSecond() {
+            return bytes / seconds / (1 << 20);
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"tree\": \"%s\", \"mode\": \"%s\", \"files\": %d, \"bytes\": %d, \"seconds\": %.6f, \"filesPerSecond\": %.1f, \"megabytesPerSecond\": %.1f}",
+                    tree, mode, files, bytes, seconds, filesPerSecond(), megabytesPerSecond());
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-5s %-45s %12.1f files/s %10.1f MB/s", tree, mode.isEmpty() ? "(default)" : mode, filesPerSecond(), megabytesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Decides which paths of a walk are listed, using only names and attributes the walk already has,
+ * so rejected files are never opened and rejected directories are never listed.
+ * Patterns are matched against both the file name and the path relative to the walked root.
+ */
+class WalkFilter {
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private long minSize;
+    private long maxSize = Long.MAX_VALUE;
+
+    /**
+     * Lists only files matching this or another included pattern.
+     *
+     * @param pattern {@code glob:} or {@code regex:} pattern, see {@link java.nio.file.FileSystem#getPathMatcher(String)}
+     * @param option command line option for error messages
+     */
+    void include(String pattern, String option) {
+        includes.add(matcher(pattern, option));
+    }
+
+    /**
+     * Skips files and whole directories matching the pattern.
+     */
+    void exclude(String pattern, String option) {
+        excludes.add(matcher(pattern, option));
+    }
+
+    private static PathMatcher matcher(String pattern, String option) {
+        try {
+            return FileSystems.getDefault().getPathMatcher(pattern);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("option " + option + " has incorrect pattern: " + e.getDescription()
+                    + " near index " + e.getIndex() + " of " + e.getPattern());
+        }
+    }
+
+    void minSize(long size) {
+        minSize = size;
+    }
+
+    void maxSize(long size) {
+        maxSize = size;
+    }
+
+    boolean acceptsDirectory(Path root, Path dir) {
+        return dir.equals(root) || !matches(excludes, root, dir);
+    }
+
+    boolean acceptsFile(Path root, Path file, BasicFileAttributes attrs) {
+        return acceptsName(root, file) && attrs.size() >= minSize && attrs.size() <= maxSize;
+    }
+
+    /**
+     * Checks only patterns, for files which attributes can't be read.
+     */
+    boolean acceptsName(Path root, Path file) {
+        return !matches(excludes, root, file) && (includes.isEmpty() || matches(includes, root, file));
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, Path root, Path path) {
+        Path name = path.getFileName();
+        Path relative = root != null && path.startsWith(root) ? root.relativize(path) : null;
+        for (PathMatcher matcher : matchers) {
+            if (name != null && matcher.matches(name) || relative != null && matcher.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
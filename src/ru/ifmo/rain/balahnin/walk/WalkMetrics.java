@@ -0,0 +1,191 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters of a walk, updated concurrently by hashing workers.
+ */
+class WalkMetrics implements WalkMetricsMBean {
+    private static final String NAME = "ru.ifmo.rain.balahnin.walk:type=WalkMetrics";
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bufferBytes = new LongAdder();
+    private final long startAllocated = allocatedBytes();
+    private final AtomicLongArray latencies = new AtomicLongArray(Long.SIZE);
+    private volatile IntSupplier queueDepth = () -> 0;
+
+    /**
+     * Records visited file.
+     *
+     * @param nanos time spent to get its hash
+     */
+    void file(long nanos) {
+        files.increment();
+        latencies.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(Math.max(nanos, 1)));
+    }
+
+    void bytes(long bytes) {
+        this.bytes.add(bytes);
+    }
+
+    void bufferAllocated(long bytes) {
+        bufferBytes.add(bytes);
+    }
+
+    void failure() {
+        failures.increment();
+    }
+
+    void queueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    @Override
+    public long getFilesVisited() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytesHashed() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return getFilesVisited() / seconds();
+    }
+
+    @Override
+    public double getMegabytesPerSecond() {
+        return getBytesHashed() / seconds() / (1 << 20);
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] histogram = new long[latencies.length()];
+        for (int i = 0; i < histogram.length; ++i) {
+            histogram[i] = latencies.get(i);
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public long getBufferBytes() {
+        return bufferBytes.sum();
+    }
+
+    @Override
+    public double getAllocatedMegabytesPerSecond() {
+        long allocated = allocatedBytes();
+        return allocated < 0 ? -1 : (allocated - startAllocated) / seconds() / (1 << 20);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long allocated : allocations.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(allocated, 0);
+        }
+        return total;
+    }
+
+    /**
+     * Upper bound of the histogram bucket containing the percentile.
+     */
+    private long percentile(double fraction) {
+        long[] histogram = getLatencyHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        long seen = 0;
+        for (int i = 0; i < histogram.length; ++i) {
+            seen += histogram[i];
+            if (seen > 0 && seen >= fraction * total) {
+                return (i >= 62 ? Long.MAX_VALUE : 2L << i) / 1000;
+            }
+        }
+        return 0;
+    }
+
+    private double seconds() {
+        return Math.max(System.nanoTime() - start, 1) / 1e9;
+    }
+
+    String toText() {
+        return String.format(Locale.ROOT, "%d files, %d failures, %.1f MB, %.1f files/s, %.1f MB/s, queue %d, latency p50 %d us, p99 %d us, "
+                        + "buffers %.1f MB, allocation %.1f MB/s",
+                getFilesVisited(), getFailures(), getBytesHashed() / (double) (1 << 20), getFilesPerSecond(),
+                getMegabytesPerSecond(), getQueueDepth(), getLatencyP50Micros(), getLatencyP99Micros(),
+                getBufferBytes() / (double) (1 << 20), getAllocatedMegabytesPerSecond());
+    }
+
+    String toJson() {
+        return String.format(Locale.ROOT, "{\"filesVisited\": %d, \"failures\": %d, \"bytesHashed\": %d, \"filesPerSecond\": %.1f, "
+                        + "\"megabytesPerSecond\": %.1f, \"queueDepth\": %d, \"latencyP50Micros\": %d, \"latencyP99Micros\": %d, "
+                        + "\"bufferBytes\": %d, \"allocatedMegabytesPerSecond\": %.1f}",
+                getFilesVisited(), getFailures(), getBytesHashed(), getFilesPerSecond(),
+                getMegabytesPerSecond(), getQueueDepth(), getLatencyP50Micros(), getLatencyP99Micros(),
+                getBufferBytes(), getAllocatedMegabytesPerSecond());
+    }
+
+    /**
+     * Makes metrics visible through JMX until {@link #unregister()}.
+     */
+    void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.println("can't register walk metrics: " + e.getMessage());
+        }
+    }
+
+    void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(NAME));
+        } catch (JMException ignored) {
+        }
+    }
+}
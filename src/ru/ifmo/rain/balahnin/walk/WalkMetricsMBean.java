@@ -0,0 +1,37 @@
+package ru.ifmo.rain.balahnin.walk;
+
+/**
+ * Progress of the running walk, registered as {@code ru.ifmo.rain.balahnin.walk:type=WalkMetrics}.
+ */
+public interface WalkMetricsMBean {
+    long getFilesVisited();
+
+    long getBytesHashed();
+
+    long getFailures();
+
+    int getQueueDepth();
+
+    double getFilesPerSecond();
+
+    double getMegabytesPerSecond();
+
+    /**
+     * Number of files hashed in {@code [2^i, 2^(i+1))} nanoseconds for every {@code i}.
+     */
+    long[] getLatencyHistogram();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP99Micros();
+
+    /**
+     * Memory taken by read buffers of hashing threads.
+     */
+    long getBufferBytes();
+
+    /**
+     * Heap allocation rate of live threads since the walk started, {@code -1} if the JVM can't measure it.
+     */
+    double getAllocatedMegabytesPerSecond();
+}
@@ -0,0 +1,265 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line of {@link RecursiveWalk}: {@code [options] <input file> <output file>}.
+ * Supported options:
+ * <ul>
+ *     <li>{@code -threads <n>} - hash files on {@code n} worker threads</li>
+ *     <li>{@code -async <n>} - read up to {@code n} files at once through asynchronous channels,
+ *     can't be combined with {@code -threads}, {@code -dedup} and {@code -chunks}</li>
+ *     <li>{@code -fork <n>} - list directories on a fork-join pool of {@code n} threads, see {@link ForkJoinWalker};
+ *     files of a root are listed in no fixed order then, this can't be combined with {@code -merkle} and {@code -checkpoint}</li>
+ *     <li>{@code -roots <n>} - walk up to {@code n} roots from the input file at once, output keeps input order</li>
+ *     <li>{@code -queue <n>} - maximum number of results of one root waiting for output</li>
+ *     <li>{@code -mmap <bytes>} - hash files of at least this size through memory mapping</li>
+ *     <li>{@code -buffer <bytes>} - size of read buffers of every hashing thread, from 64 KiB to 4 MiB</li>
+ *     <li>{@code -include <glob>}, {@code -include-regex <regex>} - list only files matching one of these patterns</li>
+ *     <li>{@code -exclude <glob>}, {@code -exclude-regex <regex>} - skip files and directories matching these patterns</li>
+ *     <li>{@code -min-size <bytes>}, {@code -max-size <bytes>} - list only files of these sizes, see {@link WalkFilter}</li>
+ *     <li>{@code -follow} - follow symbolic links, every directory is still walked only once per root</li>
+ *     <li>{@code -depth <n>} - don't descend more than {@code n} levels below a root</li>
+ *     <li>{@code -cache <file>} - reuse hashes of unchanged files from this file and update it</li>
+ *     <li>{@code -hash <name>[,<name>...]} - hash algorithm, see {@link HashAlgorithm#forName(String)};
+ *     several comma-separated algorithms are computed in one read and listed on one line, see {@link MultiHash},
+ *     this can't be combined with {@code -async}, {@code -cache}, {@code -dedup}, {@code -chunks}, {@code -merkle},
+ *     {@code -changes}, {@code -sort}, {@code -format binary} and {@code -checkpoint}</li>
+ *     <li>{@code -dedup} - hash files with several hard links only once</li>
+ *     <li>{@code -merkle} - also list directories with hashes of their contents, see {@link MerkleTree}</li>
+ *     <li>{@code -chunks <file>} - write content-defined chunks of every file to this manifest, see {@link ChunkManifest}</li>
+ *     <li>{@code -chunk-size <bytes>} - average chunk size, a power of two</li>
+ *     <li>{@code -progress <seconds>} - periodically print progress to stderr</li>
+ *     <li>{@code -progress-json <seconds>} - the same as JSON lines</li>
+ *     <li>{@code -format <text|binary>} - output format, text lines by default, see {@link BinaryRecordFormat}</li>
+ *     <li>{@code -sort} - write records ordered by path after the walk ends, see {@link SortedRecordFormat}</li>
+ *     <li>{@code -gzip} - compress output with gzip</li>
+ *     <li>{@code -checkpoint <file>} - periodically save progress to this file, see {@link Checkpoints},
+ *     can't be combined with {@code -fork}, {@code -gzip}, {@code -sort}, {@code -merkle}, {@code -chunks} and {@code -changes}</li>
+ *     <li>{@code -checkpoint-interval <seconds>} - time between checkpoints, 60 by default</li>
+ *     <li>{@code -resume} - continue the walk from the checkpoint instead of starting over</li>
+ *     <li>{@code -changes <file>} - write only differences from this previous output, see {@link ChangeJournal};
+ *     needs {@code -cache}, which skips reading files of unchanged size and modification time</li>
+ * </ul>
+ */
+class WalkOptions {
+    String input;
+    String output;
+    int threads = 1;
+    int async;
+    int fork;
+    int roots = 1;
+    int queue = -1;
+    long mapThreshold = Long.MAX_VALUE;
+    int bufferSize = BufferPool.MIN_SIZE;
+    WalkFilter filter;
+    boolean followLinks;
+    int maxDepth = Integer.MAX_VALUE;
+    String cache;
+    HashAlgorithm algorithm = new Fnv1Hash32();
+    MultiHash hashes;
+    String changes;
+    boolean binary;
+    boolean sorted;
+    boolean gzip;
+    String checkpoint;
+    int checkpointInterval = 60;
+    boolean resume;
+    boolean dedup;
+    int progress;
+    boolean progressJson;
+    boolean merkle;
+    String chunks;
+    int chunkSize = 1 << 20;
+
+    static WalkOptions parse(String[] args) {
+        if (args == null) {
+            throw new IllegalArgumentException("need 2 arguments - input and output files names, now - 0");
+        }
+        WalkOptions options = new WalkOptions();
+        int i = 0;
+        while (i < args.length && args[i] != null && args[i].startsWith("-")) {
+            String option = args[i++];
+            switch (option) {
+                case "-threads":
+                    options.threads = intValue(args, i++, option, 1);
+                    break;
+                case "-async":
+                    options.async = intValue(args, i++, option, 1);
+                    break;
+                case "-fork":
+                    options.fork = intValue(args, i++, option, 1);
+                    break;
+                case "-roots":
+                    options.roots = intValue(args, i++, option, 1);
+                    break;
+                case "-queue":
+                    options.queue = intValue(args, i++, option, 1);
+                    break;
+                case "-mmap":
+                    options.mapThreshold = longValue(args, i++, option, 0);
+                    break;
+                case "-buffer":
+                    options.bufferSize = intValue(args, i++, option, BufferPool.MIN_SIZE);
+                    if (options.bufferSize > BufferPool.MAX_SIZE) {
+                        throw new IllegalArgumentException("option " + option + " must be <= " + BufferPool.MAX_SIZE + ", now " + options.bufferSize);
+                    }
+                    break;
+                case "-include":
+                case "-include-regex":
+                    options.filter().include(pattern(args, i++, option), option);
+                    break;
+                case "-exclude":
+                case "-exclude-regex":
+                    options.filter().exclude(pattern(args, i++, option), option);
+                    break;
+                case "-min-size":
+                    options.filter().minSize(longValue(args, i++, option, 0));
+                    break;
+                case "-max-size":
+                    options.filter().maxSize(longValue(args, i++, option, 0));
+                    break;
+                case "-follow":
+                    options.followLinks = true;
+                    break;
+                case "-depth":
+                    options.maxDepth = intValue(args, i++, option, 0);
+                    break;
+                case "-cache":
+                    options.cache = value(args, i++, option);
+                    break;
+                case "-hash":
+                    List<HashAlgorithm> algorithms = new ArrayList<>();
+                    for (String name : value(args, i++, option).split(",")) {
+                        algorithms.add(HashAlgorithm.forName(name));
+                    }
+                    options.algorithm = algorithms.get(0);
+                    options.hashes = algorithms.size() > 1 ? new MultiHash(algorithms) : null;
+                    break;
+                case "-dedup":
+                    options.dedup = true;
+                    break;
+                case "-progress":
+                case "-progress-json":
+                    options.progress = intValue(args, i++, option, 1);
+                    options.progressJson = option.equals("-progress-json");
+                    break;
+                case "-merkle":
+                    options.merkle = true;
+                    break;
+                case "-chunks":
+                    options.chunks = value(args, i++, option);
+                    break;
+                case "-chunk-size":
+                    options.chunkSize = intValue(args, i++, option, 64);
+                    if (Integer.bitCount(options.chunkSize) != 1) {
+                        throw new IllegalArgumentException("option " + option + " must be a power of two, now " + options.chunkSize);
+                    }
+                    break;
+                case "-format":
+                    String format = value(args, i++, option);
+                    if (!format.equals("text") && !format.equals("binary")) {
+                        throw new IllegalArgumentException("option " + option + " must be text or binary, now " + format);
+                    }
+                    options.binary = format.equals("binary");
+                    break;
+                case "-sort":
+                    options.sorted = true;
+                    break;
+                case "-gzip":
+                    options.gzip = true;
+                    break;
+                case "-checkpoint":
+                    options.checkpoint = value(args, i++, option);
+                    break;
+                case "-checkpoint-interval":
+                    options.checkpointInterval = intValue(args, i++, option, 1);
+                    break;
+                case "-resume":
+                    options.resume = true;
+                    break;
+                case "-changes":
+                    options.changes = value(args, i++, option);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + option);
+            }
+        }
+        if (args.length - i != 2) {
+            throw new IllegalArgumentException("need 2 arguments - input and output files names, now - " + (args.length - i));
+        }
+        if (args[i] == null || args[i + 1] == null) {
+            throw new IllegalArgumentException("args is null");
+        }
+        options.input = args[i];
+        options.output = args[i + 1];
+        if (options.async > 0 && (options.threads > 1 || options.dedup || options.chunks != null)) {
+            throw new IllegalArgumentException("option -async can't be combined with -threads, -dedup or -chunks");
+        }
+        if (options.changes != null && options.cache == null) {
+            throw new IllegalArgumentException("option -changes needs -cache, otherwise every file is read to be compared");
+        }
+        if (options.binary && options.changes != null) {
+            throw new IllegalArgumentException("option -changes writes text, can't be combined with -format binary");
+        }
+        if (options.resume && options.checkpoint == null) {
+            throw new IllegalArgumentException("option -resume needs -checkpoint");
+        }
+        if (options.checkpoint != null && (options.fork > 0 || options.gzip || options.sorted || options.merkle
+                || options.chunks != null || options.changes != null)) {
+            throw new IllegalArgumentException("option -checkpoint can't be combined with -fork, -gzip, -sort, -merkle, -chunks or -changes");
+        }
+        if (options.fork > 0 && options.merkle) {
+            throw new IllegalArgumentException("option -fork can't be combined with -merkle");
+        }
+        if (options.hashes != null && (options.async > 0 || options.cache != null || options.dedup || options.chunks != null
+                || options.merkle || options.changes != null || options.sorted || options.binary || options.checkpoint != null)) {
+            throw new IllegalArgumentException("several hash algorithms can't be combined with -async, -cache, -dedup, -chunks, "
+                    + "-merkle, -changes, -sort, -format binary or -checkpoint");
+        }
+        if (options.queue == -1) {
+            options.queue = Math.max(options.threads, options.async) * 64;
+        }
+        return options;
+    }
+
+    private WalkFilter filter() {
+        if (filter == null) {
+            filter = new WalkFilter();
+        }
+        return filter;
+    }
+
+    private static String pattern(String[] args, int index, String option) {
+        return (option.endsWith("-regex") ? "regex:" : "glob:") + value(args, index, option);
+    }
+
+    static String value(String[] args, int index, String option) {
+        if (index >= args.length || args[index] == null) {
+            throw new IllegalArgumentException("option " + option + " needs a value");
+        }
+        return args[index];
+    }
+
+    static int intValue(String[] args, int index, String option, int min) {
+        long result = longValue(args, index, option, min);
+        if (result > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("option " + option + " is too large, now " + result);
+        }
+        return (int) result;
+    }
+
+    static long longValue(String[] args, int index, String option, long min) {
+        String value = value(args, index, option);
+        try {
+            long result = Long.parseLong(value);
+            if (result < min) {
+                throw new IllegalArgumentException("option " + option + " must be >= " + min + ", now " + result);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("option " + option + " needs an integer, now " + value);
+        }
+    }
+}
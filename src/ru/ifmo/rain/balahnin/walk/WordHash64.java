@@ -0,0 +1,62 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import static java.lang.Long.rotateLeft;
+
+/**
+ * Multiplicative hash over 64-bit words instead of bytes.
+ * Four independent lanes consume a 32-byte stripe per step, so multiplications don't wait for each other
+ * and the loop is friendly to superscalar and vector units. Lanes are folded together with the tail at the end.
+ */
+class WordHash64 implements HashAlgorithm {
+    static final String NAME = "word-64";
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int digits() {
+        return 16;
+    }
+
+    @Override
+    public Accumulator start() {
+        return new StripedAccumulator() {
+            private long lane1 = 1;
+            private long lane2 = 2;
+            private long lane3 = 3;
+            private long lane4 = 4;
+
+            @Override
+            void stripe(byte[] bytes, int offset) {
+                lane1 = step(lane1, readLong(bytes, offset));
+                lane2 = step(lane2, readLong(bytes, offset + 8));
+                lane3 = step(lane3, readLong(bytes, offset + 16));
+                lane4 = step(lane4, readLong(bytes, offset + 24));
+            }
+
+            @Override
+            long finish(byte[] tail, int length, long total) {
+                long hash = step(step(step(step(total, lane1), lane2), lane3), lane4);
+                int i = 0;
+                for (; i + 8 <= length; i += 8) {
+                    hash = step(hash, readLong(tail, i));
+                }
+                for (; i < length; ++i) {
+                    hash = step(hash, tail[i] & 0xff);
+                }
+                hash ^= hash >>> 33;
+                hash *= 0xff51afd7ed558ccdL;
+                hash ^= hash >>> 33;
+                hash *= 0xc4ceb9fe1a85ec53L;
+                return hash ^ hash >>> 33;
+            }
+        };
+    }
+
+    private static long step(long lane, long word) {
+        return rotateLeft((lane ^ word) * MULTIPLIER, 31);
+    }
+}
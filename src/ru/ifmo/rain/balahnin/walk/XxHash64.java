@@ -0,0 +1,88 @@
+package ru.ifmo.rain.balahnin.walk;
+
+import static java.lang.Long.rotateLeft;
+
+/**
+ * xxHash64 with zero seed.
+ */
+class XxHash64 implements HashAlgorithm {
+    static final String NAME = "xxh64";
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int digits() {
+        return 16;
+    }
+
+    @Override
+    public Accumulator start() {
+        return new StripedAccumulator() {
+            private long v1 = P1 + P2;
+            private long v2 = P2;
+            private long v3 = 0;
+            private long v4 = -P1;
+
+            @Override
+            void stripe(byte[] bytes, int offset) {
+                v1 = round(v1, readLong(bytes, offset));
+                v2 = round(v2, readLong(bytes, offset + 8));
+                v3 = round(v3, readLong(bytes, offset + 16));
+                v4 = round(v4, readLong(bytes, offset + 24));
+            }
+
+            @Override
+            long finish(byte[] tail, int length, long total) {
+                long hash;
+                if (total >= STRIPE) {
+                    hash = rotateLeft(v1, 1) + rotateLeft(v2, 7) + rotateLeft(v3, 12) + rotateLeft(v4, 18);
+                    hash = merge(hash, v1);
+                    hash = merge(hash, v2);
+                    hash = merge(hash, v3);
+                    hash = merge(hash, v4);
+                } else {
+                    hash = P5;
+                }
+                hash += total;
+
+                int i = 0;
+                for (; i + 8 <= length; i += 8) {
+                    hash ^= round(0, readLong(tail, i));
+                    hash = rotateLeft(hash, 27) * P1 + P4;
+                }
+                if (i + 4 <= length) {
+                    hash ^= readInt(tail, i) * P1;
+                    hash = rotateLeft(hash, 23) * P2 + P3;
+                    i += 4;
+                }
+                for (; i < length; ++i) {
+                    hash ^= (tail[i] & 0xff) * P5;
+                    hash = rotateLeft(hash, 11) * P1;
+                }
+
+                hash ^= hash >>> 33;
+                hash *= P2;
+                hash ^= hash >>> 29;
+                hash *= P3;
+                hash ^= hash >>> 32;
+                return hash;
+            }
+        };
+    }
+
+    private static long round(long accumulator, long input) {
+        return rotateLeft(accumulator + input * P2, 31) * P1;
+    }
+
+    private static long merge(long hash, long value) {
+        return (hash ^ round(0, value)) * P1 + P4;
+    }
+}